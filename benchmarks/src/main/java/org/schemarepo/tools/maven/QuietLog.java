@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Mojo log which only reports errors, so that console output does not skew the measurements.
+ */
+class QuietLog extends SystemStreamLog {
+
+  @Override
+  public boolean isDebugEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return false;
+  }
+
+  @Override
+  public void debug(final CharSequence content) {
+  }
+
+  @Override
+  public void debug(final CharSequence content, final Throwable error) {
+  }
+
+  @Override
+  public void info(final CharSequence content) {
+  }
+
+  @Override
+  public void info(final CharSequence content, final Throwable error) {
+  }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.schemarepo.InMemoryRepository;
+import org.schemarepo.config.Config;
+import org.schemarepo.server.RepositoryServer;
+
+/**
+ * End-to-end run of the <pre>register-schemas</pre> goal against an in-process schema-repo backed by
+ * {@link InMemoryRepository}, the same setup the mojo's tests use.
+ * Every invocation forces registration of the whole tree; after the first one all schemas already exist,
+ * so this measures the steady state of a deploy where most schemas did not change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RegistrationBenchmark {
+
+  private static final int JETTY_PORT = 32976;
+
+  @Param({"100", "1000"})
+  public int schemaCnt;
+
+  @Param({"1", "8"})
+  public int threads;
+
+  /** Whether unchanged schemas are recognized by a latest version lookup rather than a repeated registration. */
+  @Param({"false", "true"})
+  public boolean skipEquivalent;
+
+  private RepositoryServer server;
+  private String serverURL;
+  private Path root;
+
+  @Setup
+  public void setUp() throws Exception {
+    final Properties props = new Properties();
+    props.setProperty(Config.REPO_CLASS, InMemoryRepository.class.getName());
+    props.setProperty(Config.JETTY_PORT, String.valueOf(JETTY_PORT));
+    props.setProperty(Config.JETTY_GRACEFUL_SHUTDOWN, "100");
+    server = new RepositoryServer(props);
+    server.start();
+    serverURL = "http://localhost:" + JETTY_PORT + Config.getDefault(Config.JETTY_PATH);
+    root = SyntheticSchemaTree.create("registration-bench", schemaCnt, 2, 50);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    server.stop();
+    SyntheticSchemaTree.delete(root);
+  }
+
+  @Benchmark
+  public RepoClientMojo register() throws Exception {
+    final RepoClientMojo mojo = new RepoClientMojo();
+    mojo.setLog(new QuietLog());
+    mojo.project = new MavenProject();
+    mojo.schemaDir = root.toFile();
+    mojo.schemaFileExt = SyntheticSchemaTree.SCHEMA_FILE_EXT;
+    mojo.subjectNameStrategyClass = RepoClientMojo.DEFAULT_SUBJECT_NAME_STRATEGY_CLASS;
+    mojo.serverURL = serverURL;
+    mojo.threads = threads;
+    mojo.repositoryClientFactoryClass = RepoClientMojo.DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS;
+    mojo.httpKeepAlive = true;
+    mojo.httpConnectTimeout = 10000;
+    mojo.httpReadTimeout = 60000;
+    mojo.force = true;
+    mojo.skipEquivalent = skipEquivalent;
+    mojo.execute();
+    return mojo;
+  }
+
+}
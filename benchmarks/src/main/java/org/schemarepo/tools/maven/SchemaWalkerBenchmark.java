@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Schema discovery: a full walk of a synthetic schema tree, as done by the registration pipeline, sequential or with
+ * sibling directories walked concurrently.
+ * The queue is unbounded, so the walk is measured on its own, without waiting for a consumer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SchemaWalkerBenchmark {
+
+  @Param({"10000", "100000"})
+  public int schemaCnt;
+
+  @Param({"2", "6"})
+  public int depth;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  private Path root;
+
+  @Setup
+  public void setUp() throws Exception {
+    root = SyntheticSchemaTree.create("schema-walker-bench", schemaCnt, depth, 50);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    SyntheticSchemaTree.delete(root);
+  }
+
+  @Benchmark
+  public int walk() throws Exception {
+    final SchemaWalker walker = new SchemaWalker(root, SchemaFilter.of(root, SyntheticSchemaTree.SCHEMA_FILE_EXT),
+        parallelism, new LinkedBlockingQueue<Path>());
+    walker.run();
+    if (walker.getError() != null) {
+      throw walker.getError();
+    }
+    return walker.getSchemaCnt();
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.schemarepo.tools.maven.PropertyKeys.HIERARCHICAL_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.SCHEMA_DIR;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of deriving the subject name from a schema path, for each of the bundled strategies,
+ * over shallow and deep paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubjectNameStrategyBenchmark {
+
+  private static final int PATHS = 1024;
+
+  @Param({
+      "org.schemarepo.tools.maven.DefaultSubjectNameStrategy",
+      "org.schemarepo.tools.maven.HierarchicalSubjectNameStrategy",
+      "org.schemarepo.tools.maven.PatternSubjectNameStrategy"
+  })
+  public String strategyClass;
+
+  @Param({"1", "4", "16"})
+  public int depth;
+
+  @Param({"1", "3"})
+  public int numberOfAncestors;
+
+  private SubjectNameStrategy strategy;
+  private Path[] paths;
+  private int next;
+
+  @Setup
+  public void setUp() throws Exception {
+    final Properties properties = new Properties();
+    properties.setProperty(HIERARCHICAL_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "numberOfAncestors",
+        String.valueOf(numberOfAncestors));
+    // same naming as the hierarchical strategy: the last numberOfAncestors folders and the file name
+    properties.setProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "pattern",
+        "(?:.*/)?((?:[^/]+/){0," + numberOfAncestors + "})([^/]+)\\.avsc");
+    properties.setProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "template", "{1}{2}");
+    properties.setProperty(SCHEMA_DIR, "/schemas");
+    strategy = Class.forName(strategyClass).asSubclass(SubjectNameStrategy.class).newInstance();
+    strategy.configure(properties);
+
+    paths = new Path[PATHS];
+    for (int i = 0; i < PATHS; i++) {
+      Path path = Paths.get("/schemas");
+      for (int level = 0; level < depth; level++) {
+        path = path.resolve("dir" + level + "_" + (i % 7));
+      }
+      paths[i] = path.resolve("schema_" + i + ".avsc");
+    }
+  }
+
+  @Benchmark
+  public String getSubjectName() {
+    next = (next + 1) & (PATHS - 1);
+    return strategy.getSubjectName(paths[next]);
+  }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Generates a directory tree of schema files for the benchmarks.
+ * Files are spread evenly over directories nested <pre>depth</pre> levels deep, each level branching up to
+ * {@value #FAN_OUT} ways, with at most <pre>filesPerDirectory</pre> schema files (plus a non-matching file, as real
+ * trees have those too) in each.
+ */
+final class SyntheticSchemaTree {
+
+  static final String SCHEMA_FILE_EXT = ".avsc";
+  private static final int FAN_OUT = 8;
+
+  private SyntheticSchemaTree() {}
+
+  static Path create(final String prefix, final int schemaCnt, final int depth, final int filesPerDirectory)
+      throws IOException {
+    final Path root = Files.createTempDirectory(prefix);
+    int created = 0;
+    for (int dirIdx = 0; created < schemaCnt; dirIdx++) {
+      // dirIdx written in base FAN_OUT, one digit per level from the deepest one up, so that consecutive
+      // directories share their parents; the top level takes what is left, and grows wider once the tree is full
+      final String[] names = new String[depth];
+      for (int level = depth - 1, idx = dirIdx; level >= 0; level--, idx /= FAN_OUT) {
+        names[level] = "level" + level + "_" + (level == 0 ? idx : idx % FAN_OUT);
+      }
+      Path dir = root;
+      for (final String name : names) {
+        dir = dir.resolve(name);
+      }
+      Files.createDirectories(dir);
+      Files.write(dir.resolve("README.txt"), "not a schema".getBytes(StandardCharsets.UTF_8));
+      for (int i = 0; i < filesPerDirectory && created < schemaCnt; i++, created++) {
+        Files.write(dir.resolve("record_" + created + SCHEMA_FILE_EXT), schema(created).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return root;
+  }
+
+  static String schema(final int idx) {
+    return "{\"type\": \"record\", \"name\": \"Record" + idx + "\", \"namespace\": \"org.schemarepo.bench\", "
+        + "\"fields\": [{\"name\": \"id\", \"type\": \"long\"}, {\"name\": \"payload\", \"type\": \"string\"}]}";
+  }
+
+  static void delete(final Path root) throws IOException {
+    if (root == null || !Files.exists(root)) {
+      return;
+    }
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.HTTP_PROPERTIES_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.SCHEMA_DIR;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.schemarepo.Repository;
+import org.schemarepo.config.Config;
+
+/**
+ * Command line counterpart of the <pre>register-schemas</pre> goal, for pipelines which don't otherwise run Maven.
+ * Takes the goal's properties, e.g. <pre>schema-repo.tools.registration.schemaDir=src/main/avro</pre>, as arguments,
+ * as system properties or from properties files given as <pre>@file</pre> arguments, later ones overriding earlier ones,
+ * and registers the schema directory through the same {@link RegistrationEngine}, without loading Maven's project model.
+ * <p>The registration manifest defaults to <pre>.schema-repo/registration.manifest</pre> under the working directory,
+ * and no report is written unless <pre>reportFile</pre> is set. Exits with 1 if any schema failed to get registered,
+ * 2 if the arguments or the configuration are invalid, 3 if the registration could not run, e.g. the manifest could
+ * not be read.</p>
+ */
+public final class SchemaRepoCli {
+
+  static final int EXIT_FAILURE = 1;
+  static final int EXIT_USAGE = 2;
+  static final int EXIT_ERROR = 3;
+  static final String DEFAULT_MANIFEST_FILE = ".schema-repo/registration.manifest";
+
+  private final Properties properties;
+  private final Log log;
+  // set by configure()
+  private String serverURL;
+  private File schemaDir;
+  private SchemaFilter filter;
+  private SubjectNameStrategy subjectNameStrategy;
+  private Charset charset;
+  private int discoveryThreads;
+  private RegistrationEngine engine;
+  private File manifestFile;
+  private boolean force;
+  private RepositoryClientFactory clientFactory;
+  private RegistrationMetrics metrics;
+  private RetryingInvoker invoker;
+
+  SchemaRepoCli(final Properties properties, final Log log) {
+    this.properties = properties;
+    this.log = log;
+  }
+
+  public static void main(final String[] args) {
+    System.exit(run(args, new SystemStreamLog()));
+  }
+
+  /**
+   * @return the process exit code
+   */
+  static int run(final String[] args, final Log log) {
+    final Properties properties = new Properties();
+    for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+      if (property.getKey().toString().startsWith("schema-repo.")) {
+        properties.put(property.getKey(), property.getValue());
+      }
+    }
+    for (String arg : args) {
+      if ("-h".equals(arg) || "--help".equals(arg)) {
+        usage(System.out);
+        return 0;
+      }
+      if (arg.startsWith("@")) {
+        try (InputStream in = Files.newInputStream(new File(arg.substring(1)).toPath())) {
+          properties.load(in);
+        } catch (IOException e) {
+          log.error(format("Failed to read properties file %s", arg.substring(1)), e);
+          return EXIT_USAGE;
+        }
+        continue;
+      }
+      final int separator = arg.indexOf('=');
+      if (separator < 1) {
+        log.error(format("Invalid argument %s -- expected property=value or @file", arg));
+        usage(System.err);
+        return EXIT_USAGE;
+      }
+      properties.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+    final SchemaRepoCli cli = new SchemaRepoCli(properties, log);
+    try {
+      cli.configure();
+    } catch (MojoExecutionException e) {
+      error(log, e);
+      return EXIT_USAGE;
+    }
+    try {
+      cli.register();
+      return 0;
+    } catch (MojoFailureException e) {
+      log.error(e.getMessage() + ": " + e.getLongMessage());
+      return EXIT_FAILURE;
+    } catch (MojoExecutionException e) {
+      error(log, e);
+      return EXIT_ERROR;
+    } catch (RuntimeException e) {
+      log.error("Registration failed", e);
+      return EXIT_ERROR;
+    }
+  }
+
+  private static void error(final Log log, final MojoExecutionException e) {
+    if (e.getCause() != null) {
+      log.error(e.getMessage(), e.getCause());
+    } else {
+      log.error(e.getMessage());
+    }
+  }
+
+  private static void usage(final PrintStream out) {
+    out.println("Usage: schema-repo [property=value | @file.properties]...");
+    out.println("Registers the schemas of a directory with a schema-repo, taking the register-schemas goal's properties:");
+    out.println("  " + Config.CLIENT_SERVER_URL + "=<schema-repo URL>");
+    out.println("  " + SCHEMA_DIR + "=<schema directory>");
+    out.println("  " + REPO_CLIENT_PROPERTY_PREFIX + "<parameter>=<value>, e.g. threads, schemaFileExt, validate");
+  }
+
+  /**
+   * Checks the properties and prepares the registration, without reading any schema or contacting the schema-repo.
+   * @throws MojoExecutionException if the configuration is invalid
+   */
+  void configure() throws MojoExecutionException {
+    serverURL = required(Config.CLIENT_SERVER_URL);
+    schemaDir = new File(required(SCHEMA_DIR)).getAbsoluteFile();
+    if (!schemaDir.isDirectory()) {
+      throw invalid(SCHEMA_DIR, schemaDir.getPath(), "not a directory");
+    }
+    final String schemaFileExt = get("schemaFileExt", AbstractSchemaRepoMojo.DEFAULT_SCHEMA_FILE_EXT);
+    final int threads = getInt("threads", AbstractSchemaRepoMojo.DEFAULT_THREADS);
+    if (threads < 1) {
+      throw invalid(REPO_CLIENT_PROPERTY_PREFIX + "threads", Integer.toString(threads), "must be a positive integer");
+    }
+    final String encoding = get("encoding", "UTF-8");
+    try {
+      charset = Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
+      throw invalid(REPO_CLIENT_PROPERTY_PREFIX + "encoding", encoding, "unsupported charset");
+    }
+    log.info(format("Looking for %s files in %s", schemaFileExt.length() > 0 ? schemaFileExt : "all", schemaDir));
+    try {
+      filter = new SchemaFilter(schemaDir.toPath().getFileSystem(), schemaFileExt, getList("schemaIncludes"),
+          getList("schemaExcludes"));
+    } catch (IllegalArgumentException e) {
+      throw invalid(REPO_CLIENT_PROPERTY_PREFIX + "schemaIncludes/schemaExcludes",
+          getList("schemaIncludes") + "/" + getList("schemaExcludes"), e.getMessage());
+    }
+    discoveryThreads = getInt("discoveryThreads", "1");
+
+    properties.setProperty(SCHEMA_DIR, schemaDir.getPath());
+    subjectNameStrategy = instantiate("subjectNameStrategyClass",
+        AbstractSchemaRepoMojo.DEFAULT_SUBJECT_NAME_STRATEGY_CLASS, SubjectNameStrategy.class);
+    try {
+      subjectNameStrategy.configure(properties);
+    } catch (RuntimeException e) {
+      throw new MojoExecutionException(format("Invalid subject name strategy properties -- %s", e.getMessage()), e);
+    }
+    log.info("Using " + subjectNameStrategy);
+
+    engine = new RegistrationEngine(log, this, serverURL, threads);
+    engine.skipEquivalent = Boolean.parseBoolean(get("skipEquivalent", "true"));
+    engine.minify = Boolean.parseBoolean(get("minify", "false"));
+    engine.orderByReferences = Boolean.parseBoolean(get("orderByReferences", "false"));
+    engine.subjectLookupThreshold = getInt("subjectLookupThreshold", AbstractSchemaRepoMojo.DEFAULT_SUBJECT_LOOKUP_THRESHOLD);
+    final String reportFile = get("reportFile", null);
+    engine.reportFile = reportFile != null ? new File(reportFile) : null;
+    if (Boolean.parseBoolean(get("validate", "false"))) {
+      final String compatibility = get("compatibility", "none");
+      try {
+        engine.validation = SchemaValidator.Compatibility.parse(compatibility);
+      } catch (IllegalArgumentException e) {
+        throw invalid(REPO_CLIENT_PROPERTY_PREFIX + "compatibility", compatibility,
+            "must be one of none, backward, forward or full");
+      }
+    }
+    manifestFile = new File(get("manifestFile", DEFAULT_MANIFEST_FILE));
+    force = Boolean.parseBoolean(get("force", "false"));
+
+    if (!properties.containsKey(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.MAX_CONNECTIONS)) {
+      properties.setProperty(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.MAX_CONNECTIONS,
+          Integer.toString(Math.max(threads, RESTRepositoryClientFactory.DEFAULT_MAX_CONNECTIONS)));
+    }
+    clientFactory = instantiate("repositoryClientFactoryClass",
+        AbstractSchemaRepoMojo.DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS, RepositoryClientFactory.class);
+    try {
+      clientFactory.configure(properties);
+    } catch (RuntimeException e) {
+      throw new MojoExecutionException(format("Invalid %s properties -- %s", HTTP_PROPERTIES_PREFIX + "*", e.getMessage()), e);
+    }
+    log.info("Using " + clientFactory);
+    metrics = new RegistrationMetrics();
+    invoker = createInvoker(threads, metrics);
+  }
+
+  /**
+   * Registers the schema directory, see {@link #configure()}.
+   * @throws MojoFailureException if any schema could not be registered
+   * @throws MojoExecutionException if the registration could not run
+   */
+  void register() throws MojoExecutionException, MojoFailureException {
+    try {
+      final RegistrationManifest manifest;
+      try {
+        manifest = RegistrationManifest.load(manifestFile, serverURL, force);
+      } catch (IOException e) {
+        throw new MojoExecutionException(format("Failed to read registration manifest %s", manifestFile), e);
+      }
+      if (manifest.previousSize() > 0) {
+        log.info(format("Loaded %s previously registered schemas from %s", manifest.previousSize(), manifestFile));
+      }
+      final SchemaSet schemaSet = new SchemaSet(schemaDir.getPath(), schemaDir.toPath(), filter, discoveryThreads,
+          subjectNameStrategy, charset, manifest);
+      final Repository client = new InstrumentedRepository(clientFactory.createClient(serverURL), metrics.requests);
+      log.info(format("Connecting to schema-repo at %s", serverURL));
+      engine.register(Collections.singletonList(schemaSet), client, invoker, metrics, null);
+    } finally {
+      invoker.close();
+      if (clientFactory instanceof RESTRepositoryClientFactory) {
+        log.info(((RESTRepositoryClientFactory) clientFactory).describeConnectionReuse());
+      }
+      clientFactory.close();
+    }
+  }
+
+  private RetryingInvoker createInvoker(final int threads, final RegistrationMetrics metrics) throws MojoExecutionException {
+    try {
+      final boolean adaptiveConcurrency = Boolean.parseBoolean(get("adaptiveConcurrency", "false"));
+      final double maxRequestsPerSecond = Double.parseDouble(get("maxRequestsPerSecond", "0"));
+      final AdaptiveLimiter limiter = adaptiveConcurrency || maxRequestsPerSecond > 0
+          ? new AdaptiveLimiter(adaptiveConcurrency, threads, maxRequestsPerSecond, metrics.concurrency) : null;
+      return new RetryingInvoker(getInt("retries", "2"), Long.parseLong(get("retryBackoff", "200")),
+          Long.parseLong(get("retryMaxBackoff", "5000")), Double.parseDouble(get("hedgePercentile", "0")), threads,
+          metrics, limiter);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(format("Invalid retry/hedging/concurrency properties -- %s", e.getMessage()), e);
+    }
+  }
+
+  private <T> T instantiate(final String name, final String defaultClassName, final Class<T> type)
+      throws MojoExecutionException {
+    final String className = get(name, defaultClassName);
+    try {
+      return getClass().getClassLoader().loadClass(className).asSubclass(type).newInstance();
+    } catch (Exception e) {
+      throw new MojoExecutionException(format("Invalid %s property value %s -- failed to resolve/instantiate it",
+          REPO_CLIENT_PROPERTY_PREFIX + name, className), e);
+    }
+  }
+
+  private String required(final String key) throws MojoExecutionException {
+    final String value = properties.getProperty(key);
+    if (value == null || value.isEmpty()) {
+      throw new MojoExecutionException(format("Missing %s property", key));
+    }
+    return value;
+  }
+
+  private String get(final String name, final String defaultValue) {
+    return properties.getProperty(REPO_CLIENT_PROPERTY_PREFIX + name, defaultValue);
+  }
+
+  /**
+   * @return the comma separated values of the property, as Maven splits list parameters
+   */
+  private List<String> getList(final String name) {
+    final List<String> values = new ArrayList<>();
+    for (String value : get(name, "").split(",")) {
+      if (!value.trim().isEmpty()) {
+        values.add(value.trim());
+      }
+    }
+    return values;
+  }
+
+  private int getInt(final String name, final String defaultValue) throws MojoExecutionException {
+    final String value = get(name, defaultValue);
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw invalid(REPO_CLIENT_PROPERTY_PREFIX + name, value, "not an integer");
+    }
+  }
+
+  private static MojoExecutionException invalid(final String key, final String value, final String reason) {
+    return new MojoExecutionException(format("Invalid %s property value %s -- %s", key, value, reason));
+  }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+import org.schemarepo.client.RESTRepositoryClient;
+import org.schemarepo.config.Config;
+import org.schemarepo.json.GsonJsonUtil;
+
+public class TestSchemaRepoCli {
+
+  @Test
+  public void testRegister() throws Exception {
+    File dir = new File(System.getProperty("test.dir", "target/"), "test-cli").getAbsoluteFile();
+    delete(dir);
+    Path schemaDir = dir.toPath().resolve("schemas");
+    Files.createDirectories(schemaDir.resolve("subdir"));
+    Files.write(schemaDir.resolve("cli_schema_1.properties"), "a=1".getBytes(StandardCharsets.UTF_8));
+    Files.write(schemaDir.resolve("subdir/cli_schema_2.properties"), "b=2".getBytes(StandardCharsets.UTF_8));
+    File reportFile = new File(dir, "report.json");
+
+    try (InMemorySchemaRepo server = InMemorySchemaRepo.start()) {
+      String[] args = {
+          Config.CLIENT_SERVER_URL + "=" + server.getURL(),
+          PropertyKeys.SCHEMA_DIR + "=" + schemaDir,
+          PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "schemaFileExt=.properties",
+          PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "threads=2",
+          PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "manifestFile=" + new File(dir, "registration.manifest"),
+          PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "reportFile=" + reportFile,
+      };
+      assertEquals(0, SchemaRepoCli.run(args, new SystemStreamLog()));
+      RESTRepositoryClient client = new RESTRepositoryClient(server.getURL(), new GsonJsonUtil(), true);
+      assertEquals("a=1", client.lookup("cli_schema_1").latest().getSchema());
+      assertNotNull(client.lookup("cli_schema_2"));
+      assertTrue(read(reportFile).contains("\"registered\":2"));
+
+      // unchanged schemas are skipped thanks to the manifest
+      assertEquals(0, SchemaRepoCli.run(args, new SystemStreamLog()));
+      assertTrue(read(reportFile).contains("\"skipped\":2"));
+    }
+  }
+
+  @Test
+  public void testInvalidConfiguration() throws Exception {
+    assertEquals(SchemaRepoCli.EXIT_USAGE, SchemaRepoCli.run(new String[] {"no-value"}, new SystemStreamLog()));
+    assertEquals(SchemaRepoCli.EXIT_USAGE, SchemaRepoCli.run(new String[] {PropertyKeys.SCHEMA_DIR + "=."},
+        new SystemStreamLog()));
+    assertEquals(SchemaRepoCli.EXIT_USAGE, SchemaRepoCli.run(new String[] {
+        Config.CLIENT_SERVER_URL + "=" + InMemorySchemaRepo.unusedURL(),
+        PropertyKeys.SCHEMA_DIR + "=.",
+        PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "threads=0"}, new SystemStreamLog()));
+  }
+
+  @Test
+  public void testRuntimeFailures() throws Exception {
+    File dir = new File(System.getProperty("test.dir", "target/"), "test-cli-failures").getAbsoluteFile();
+    delete(dir);
+    Path schemaDir = dir.toPath().resolve("schemas");
+    Files.createDirectories(schemaDir);
+    Files.write(schemaDir.resolve("cli_schema_1.properties"), "a=1".getBytes(StandardCharsets.UTF_8));
+    File manifestFile = new File(dir, "registration.manifest");
+    String[] args = {
+        Config.CLIENT_SERVER_URL + "=" + InMemorySchemaRepo.unusedURL(),
+        PropertyKeys.SCHEMA_DIR + "=" + schemaDir,
+        PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "schemaFileExt=.properties",
+        PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "retries=0",
+        PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX + "manifestFile=" + manifestFile,
+    };
+    // the schema-repo is unreachable, the arguments are fine
+    assertEquals(SchemaRepoCli.EXIT_FAILURE, SchemaRepoCli.run(args, new SystemStreamLog()));
+
+    Files.write(manifestFile.toPath(), new byte[] {(byte) 0xff, (byte) 0xfe, 0});
+    assertEquals(SchemaRepoCli.EXIT_ERROR, SchemaRepoCli.run(args, new SystemStreamLog()));
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).replace(" ", "");
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
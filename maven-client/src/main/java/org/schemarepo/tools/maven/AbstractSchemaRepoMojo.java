@@ -0,0 +1,354 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.HTTP_PROPERTIES_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.SCHEMA_DIR;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.schemarepo.Repository;
+import org.schemarepo.config.Config;
+
+/**
+ * Base of the goals working on the project's schema files and a schema-repo: holds the parameters
+ * controlling discovery, subject naming and the connection to the schema-repo, and the code resolving them.
+ */
+abstract class AbstractSchemaRepoMojo extends AbstractMojo {
+
+  static final String DEFAULT_SCHEMA_FILE_EXT = ".avsc";
+  static final String DEFAULT_SUBJECT_NAME_STRATEGY_CLASS = "org.schemarepo.tools.maven.DefaultSubjectNameStrategy";
+  static final String DEFAULT_THREADS = "1";
+  static final String DEFAULT_SUBJECT_LOOKUP_THRESHOLD = "100";
+  static final int DISCOVERY_QUEUE_CAPACITY = 1024;
+  static final String DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS = "org.schemarepo.tools.maven.RESTRepositoryClientFactory";
+  private static final Pattern JAVA_CLASS_NAME =
+      Pattern.compile("(\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*\\.)*\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+
+  @Parameter(required = true, readonly = true, defaultValue = "${project}")
+  MavenProject project;
+
+  /** Required by the goals discovering schemas. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "schemaDir")
+  File schemaDir;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "schemaFileExt", defaultValue = DEFAULT_SCHEMA_FILE_EXT)
+  String schemaFileExt;
+
+  /** Globs selecting schema files, relative to the schema directory, see {@link SchemaFilter}. None selects all. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "schemaIncludes")
+  List<String> schemaIncludes;
+
+  /** Globs leaving out schema files and pruning directories, relative to the schema directory. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "schemaExcludes")
+  List<String> schemaExcludes;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "discoveryThreads", defaultValue = "1")
+  int discoveryThreads;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "subjectNameStrategyClass", defaultValue = DEFAULT_SUBJECT_NAME_STRATEGY_CLASS)
+  String subjectNameStrategyClass;
+
+  /** Required by the goals talking to a schema-repo. */
+  @Parameter(property = Config.CLIENT_SERVER_URL)
+  String serverURL;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "threads", defaultValue = DEFAULT_THREADS)
+  int threads;
+
+  /** Number of subjects looked up one by one before downloading the subject listing instead, see {@link SubjectCache}. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "subjectLookupThreshold",
+      defaultValue = DEFAULT_SUBJECT_LOOKUP_THRESHOLD)
+  int subjectLookupThreshold;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "skipEquivalent", defaultValue = "true")
+  boolean skipEquivalent;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "encoding", defaultValue = "${project.build.sourceEncoding}")
+  String encoding;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "retries", defaultValue = "2")
+  int retries;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "retryBackoff", defaultValue = "200")
+  long retryBackoff;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "retryMaxBackoff", defaultValue = "5000")
+  long retryMaxBackoff;
+
+  /** Zero disables hedging. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "hedgePercentile", defaultValue = "0")
+  double hedgePercentile;
+
+  /** Whether to adapt the number of concurrent calls to the schema-repo's latency and failures. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "adaptiveConcurrency", defaultValue = "false")
+  boolean adaptiveConcurrency;
+
+  /** Zero disables the cap. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "maxRequestsPerSecond", defaultValue = "0")
+  double maxRequestsPerSecond;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "repositoryClientFactoryClass",
+      defaultValue = DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS)
+  String repositoryClientFactoryClass;
+
+  @Parameter(property = HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.KEEP_ALIVE, defaultValue = "true")
+  boolean httpKeepAlive;
+
+  /** Zero stands for the larger of the number of threads and the factory's default. */
+  @Parameter(property = HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.MAX_CONNECTIONS, defaultValue = "0")
+  int httpMaxConnections;
+
+  @Parameter(property = HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.CONNECT_TIMEOUT, defaultValue = "10000")
+  int httpConnectTimeout;
+
+  @Parameter(property = HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.READ_TIMEOUT, defaultValue = "60000")
+  int httpReadTimeout;
+
+  /** Whether to write an index of the IDs of the Avro schemas registered or fetched, see {@link SchemaIdIndex}. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "idIndex", defaultValue = "false")
+  boolean idIndex;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "idIndexResource",
+      defaultValue = "META-INF/schema-repo/${project.artifactId}.ids")
+  String idIndexResource;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "idIndexDirectory",
+      defaultValue = "${project.build.directory}/generated-resources/schema-repo-ids")
+  File idIndexDirectory;
+
+  /** Fully qualified name of the class loading the index, none is generated if not set. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "idIndexClass")
+  String idIndexClass;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "idIndexSourceDirectory",
+      defaultValue = "${project.build.directory}/generated-sources/schema-repo")
+  File idIndexSourceDirectory;
+
+  void verifySchemaDir() throws MojoExecutionException {
+    if (schemaDir == null) {
+      throw new MojoExecutionException("Missing <schemaDir> parameter");
+    }
+    if (!schemaDir.isAbsolute()) {
+      schemaDir = new File(project.getBasedir(), schemaDir.getPath());
+    }
+    if (!schemaDir.isDirectory()) {
+      throw new MojoExecutionException(format("Invalid <schemaDir> parameter value %s -- not a directory", schemaDir.getAbsolutePath()));
+    }
+    schemaFileExt = schemaFileExt != null ? schemaFileExt : "";
+    getLog().info(format("Looking for %s files in %s", schemaFileExt.length() > 0 ? schemaFileExt : "all", schemaDir.getAbsolutePath()));
+  }
+
+  /**
+   * @return the selection of the schema files in the schema directory
+   */
+  SchemaFilter createSchemaFilter() throws MojoExecutionException {
+    final SchemaFilter filter;
+    try {
+      filter = new SchemaFilter(schemaDir.toPath().getFileSystem(), schemaFileExt, schemaIncludes, schemaExcludes);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(format(
+          "Invalid <schemaIncludes>/<schemaExcludes> parameter value %s/%s -- %s", schemaIncludes, schemaExcludes,
+          e.getMessage()), e);
+    }
+    if ((schemaIncludes != null && !schemaIncludes.isEmpty()) || (schemaExcludes != null && !schemaExcludes.isEmpty())) {
+      getLog().info(format("Including %s, excluding %s", schemaIncludes != null && !schemaIncludes.isEmpty()
+          ? schemaIncludes : "all", schemaExcludes != null ? schemaExcludes : "[]"));
+    }
+    return filter;
+  }
+
+  /**
+   * @param manifest of the previous registrations, null if not needed
+   * @return the project's schemas, discovered in the schema directory, once verified
+   */
+  SchemaSet createSchemaSet(final RegistrationManifest manifest) throws MojoExecutionException {
+    final Charset charset = resolveEncoding();
+    final SubjectNameStrategy subjectNameStrategy = createSubjectNameStrategy();
+    return new SchemaSet(project.getId(), schemaDir.getAbsoluteFile().toPath(), createSchemaFilter(), discoveryThreads,
+        subjectNameStrategy, charset, manifest);
+  }
+
+  void verifyServerURL() throws MojoExecutionException {
+    if (serverURL == null || serverURL.isEmpty()) {
+      throw new MojoExecutionException("Missing <serverURL> parameter");
+    }
+  }
+
+  void verifyThreads() throws MojoExecutionException {
+    if (threads < 1) {
+      throw new MojoExecutionException(format("Invalid <threads> parameter value %s -- must be a positive integer", threads));
+    }
+    if (threads > 1) {
+      getLog().info(format("Using %s threads", threads));
+    }
+  }
+
+  Charset resolveEncoding() throws MojoExecutionException {
+    if (encoding == null || encoding.isEmpty()) {
+      getLog().debug(format("No encoding specified, reading schema files as %s", StandardCharsets.UTF_8));
+      return StandardCharsets.UTF_8;
+    }
+    try {
+      return Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(format("Invalid <encoding> parameter value %s -- unsupported charset", encoding), e);
+    }
+  }
+
+  SubjectNameStrategy createSubjectNameStrategy() throws MojoExecutionException {
+    SubjectNameStrategy subjectNameStrategy;
+    String step = null;
+    try {
+      step = "resolve/instantiate";
+      subjectNameStrategy = getClass().getClassLoader().loadClass(subjectNameStrategyClass).asSubclass(SubjectNameStrategy.class).newInstance();
+      step = "configure";
+      final Properties properties = new Properties();
+      properties.putAll(project.getProperties());
+      properties.setProperty(SCHEMA_DIR, schemaDir.getAbsolutePath());
+      subjectNameStrategy.configure(properties);
+    } catch (Exception e) {
+      throw new MojoExecutionException(format(
+          "Invalid <subjectNameStrategyClass> parameter value %s -- failed to %s strategy", subjectNameStrategyClass, step), e);
+    }
+    getLog().info("Using " + subjectNameStrategy);
+    return subjectNameStrategy;
+  }
+
+  RetryingInvoker createInvoker(final RegistrationMetrics metrics) throws MojoExecutionException {
+    try {
+      final AdaptiveLimiter limiter = adaptiveConcurrency || maxRequestsPerSecond > 0
+          ? new AdaptiveLimiter(adaptiveConcurrency, threads, maxRequestsPerSecond, metrics.concurrency) : null;
+      return new RetryingInvoker(retries, retryBackoff, retryMaxBackoff, hedgePercentile, threads, metrics, limiter);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(format("Invalid retry/hedging/concurrency parameters -- %s", e.getMessage()), e);
+    }
+  }
+
+  RepositoryClientFactory createRepositoryClientFactory() throws MojoExecutionException {
+    return createRepositoryClientFactory(httpConnectTimeout, httpReadTimeout);
+  }
+
+  /**
+   * @param connectTimeout connect timeout of the created clients, in milliseconds
+   * @param readTimeout read timeout of the created clients, in milliseconds
+   */
+  RepositoryClientFactory createRepositoryClientFactory(final int connectTimeout, final int readTimeout)
+      throws MojoExecutionException {
+    RepositoryClientFactory clientFactory;
+    String step = null;
+    try {
+      step = "resolve/instantiate";
+      clientFactory = getClass().getClassLoader().loadClass(repositoryClientFactoryClass)
+          .asSubclass(RepositoryClientFactory.class).newInstance();
+      step = "configure";
+      final Properties properties = new Properties();
+      properties.putAll(project.getProperties());
+      properties.setProperty(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.KEEP_ALIVE, Boolean.toString(httpKeepAlive));
+      properties.setProperty(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.MAX_CONNECTIONS, Integer.toString(
+          httpMaxConnections != 0 ? httpMaxConnections : Math.max(threads, RESTRepositoryClientFactory.DEFAULT_MAX_CONNECTIONS)));
+      properties.setProperty(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.CONNECT_TIMEOUT, Integer.toString(connectTimeout));
+      properties.setProperty(HTTP_PROPERTIES_PREFIX + RESTRepositoryClientFactory.READ_TIMEOUT, Integer.toString(readTimeout));
+      clientFactory.configure(properties);
+    } catch (Exception e) {
+      throw new MojoExecutionException(format(
+          "Invalid <repositoryClientFactoryClass> parameter value %s -- failed to %s factory", repositoryClientFactoryClass, step), e);
+    }
+    getLog().info("Using " + clientFactory);
+    if (clientFactory instanceof RESTRepositoryClientFactory
+        && threads > ((RESTRepositoryClientFactory) clientFactory).getMaxConnections()) {
+      getLog().warn(format("The %s threads share %s HTTP connections per schema-repo, and wait for one another",
+          threads, ((RESTRepositoryClientFactory) clientFactory).getMaxConnections()));
+    }
+    return clientFactory;
+  }
+
+  /**
+   * Closes the factory, logging how well its connections were reused if it can tell.
+   */
+  void closeRepositoryClientFactory(final RepositoryClientFactory clientFactory) {
+    if (clientFactory instanceof RESTRepositoryClientFactory) {
+      getLog().info(((RESTRepositoryClientFactory) clientFactory).describeConnectionReuse());
+    }
+    clientFactory.close();
+  }
+
+  /**
+   * @return the ID index to fill, null if not enabled
+   */
+  SchemaIdIndex createIdIndex() throws MojoExecutionException {
+    if (!idIndex) {
+      return null;
+    }
+    if (idIndexClass != null && !JAVA_CLASS_NAME.matcher(idIndexClass).matches()) {
+      throw new MojoExecutionException(format("Invalid <idIndexClass> parameter value %s -- not a Java class name", idIndexClass));
+    }
+    return new SchemaIdIndex();
+  }
+
+  /**
+   * Writes the ID index and the class loading it, if any, and adds them to the project's resources and sources.
+   * @param index null if not enabled
+   */
+  void writeIdIndex(final SchemaIdIndex index) throws MojoExecutionException {
+    if (index == null) {
+      return;
+    }
+    final File file = new File(idIndexDirectory, idIndexResource);
+    try {
+      index.write(file);
+      if (idIndexClass != null) {
+        SchemaIdIndex.writeLoader(idIndexSourceDirectory, idIndexClass, idIndexResource);
+        project.addCompileSourceRoot(idIndexSourceDirectory.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to write schema ID index %s", file), e);
+    }
+    final Resource resource = new Resource();
+    resource.setDirectory(idIndexDirectory.getAbsolutePath());
+    project.addResource(resource);
+    getLog().info(format("Wrote the IDs of %s schemas to %s%s", index.size(), file,
+        idIndexClass != null ? ", loaded by " + idIndexClass : ""));
+  }
+
+  Repository configureRepositoryClient(final RepositoryClientFactory clientFactory, final RegistrationMetrics metrics) {
+    return configureRepositoryClient(clientFactory, metrics, serverURL);
+  }
+
+  Repository configureRepositoryClient(final RepositoryClientFactory clientFactory, final RegistrationMetrics metrics,
+      final String url) {
+    final Repository client = new InstrumentedRepository(clientFactory.createClient(url), metrics.requests);
+    getLog().info(format("Connecting to schema-repo at %s", url));
+    return client;
+  }
+
+}
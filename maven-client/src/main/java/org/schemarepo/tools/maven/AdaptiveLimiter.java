@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side pacing of the schema-repo calls, so that many builds registering at once don't overload it.
+ * <p>When adaptive, the number of calls in flight is bounded by a limit which follows the AIMD scheme: it grows by
+ * one call per limit's worth of successful calls, as long as the limit is what holds the callers back, and is cut
+ * when the schema-repo shows signs of overload, by half on failed calls and by a tenth on calls slower than
+ * {@value #LATENCY_TOLERANCE} times the fastest one seen for the same phase. Cuts happen at most once per such
+ * latency, so that the calls sent before a cut don't cut the limit again. The limit starts at, and never exceeds,
+ * <pre>maxLimit</pre>.</p>
+ * <p>Independently, calls can be capped to <pre>maxRequestsPerSecond</pre>, evenly spaced.</p>
+ * Safe for concurrent use.
+ */
+class AdaptiveLimiter {
+
+  static final double LATENCY_TOLERANCE = 2;
+  /** Slowdowns below this are considered noise, however fast the schema-repo is. */
+  static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  static final double LATENCY_BACKOFF = 0.9;
+  static final double FAILURE_BACKOFF = 0.5;
+
+  private final boolean adaptive;
+  private final int maxLimit;
+  private final long intervalNanos;
+  private final ConcurrencyStats stats;
+  private final Map<RegistrationMetrics.Phase, Long> minLatencies = new EnumMap<>(RegistrationMetrics.Phase.class);
+  private double limit;
+  private int inFlight;
+  private long nextPermitNanos;
+  private long lastCutNanos;
+  private boolean cutYet;
+
+  /**
+   * @param maxRequestsPerSecond zero for no cap
+   */
+  AdaptiveLimiter(final boolean adaptive, final int maxLimit, final double maxRequestsPerSecond,
+      final ConcurrencyStats stats) {
+    if (maxLimit < 1 || maxRequestsPerSecond < 0) {
+      throw new IllegalArgumentException("Invalid concurrency settings");
+    }
+    this.adaptive = adaptive;
+    this.maxLimit = maxLimit;
+    this.intervalNanos = maxRequestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond) : 0;
+    this.stats = stats;
+    this.limit = maxLimit;
+    stats.start(maxLimit);
+  }
+
+  /**
+   * Waits until a call may be sent. Each successful acquisition must be followed by a
+   * {@link #release(RegistrationMetrics.Phase, long, boolean)}.
+   */
+  void acquire() throws InterruptedException {
+    final long start = System.nanoTime();
+    synchronized (this) {
+      while (inFlight >= (int) limit) {
+        wait();
+      }
+      inFlight++;
+      stats.inFlight(inFlight);
+    }
+    if (intervalNanos > 0) {
+      final long permit;
+      synchronized (this) {
+        permit = Math.max(nextPermitNanos, System.nanoTime());
+        nextPermitNanos = permit + intervalNanos;
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(permit - System.nanoTime());
+      } catch (InterruptedException e) {
+        release();
+        throw e;
+      }
+    }
+    stats.waited(System.nanoTime() - start);
+  }
+
+  /**
+   * Ends a call, adjusting the limit to its outcome.
+   * @param failed whether the call failed in a way which may be due to overload, e.g. not a schema validation error
+   */
+  synchronized void release(final RegistrationMetrics.Phase phase, final long latencyNanos, final boolean failed) {
+    final boolean saturated = inFlight >= (int) limit;
+    release();
+    if (!adaptive) {
+      return;
+    }
+    final long now = System.nanoTime();
+    Long minLatency = minLatencies.get(phase);
+    if (failed) {
+      cut(FAILURE_BACKOFF, minLatency != null ? minLatency : 0, now);
+    } else {
+      if (minLatency == null || latencyNanos < minLatency) {
+        minLatency = latencyNanos;
+        minLatencies.put(phase, minLatency);
+      }
+      if (latencyNanos > Math.max(minLatency * LATENCY_TOLERANCE, minLatency + LATENCY_SLACK_NANOS)) {
+        cut(LATENCY_BACKOFF, latencyNanos, now);
+      } else if (saturated) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+    }
+    stats.limit((int) limit);
+  }
+
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    stats.inFlight(inFlight);
+    notifyAll();
+  }
+
+  private void cut(final double backoff, final long windowNanos, final long now) {
+    if (!cutYet || now - lastCutNanos >= windowNanos) {
+      limit = Math.max(1, limit * backoff);
+      lastCutNanos = now;
+      cutYet = true;
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.util.Map;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * Avro specific handling of schema files.
+ */
+final class AvroSchemas {
+
+  static final String SCHEMA_FILE_EXT = ".avsc";
+
+  private AvroSchemas() {}
+
+  /**
+   * @param key schema file key, see {@link SchemaFile#getKey()}
+   */
+  static boolean isAvroSchemaFile(final String key) {
+    return key.endsWith(SCHEMA_FILE_EXT);
+  }
+
+  /**
+   * @return the parsed schema, or null if the text is not a valid Avro schema
+   */
+  static Schema parse(final String schema) {
+    // parsers remember the named types they have seen, so use a fresh one for every schema
+    return parse(new Schema.Parser(), schema);
+  }
+
+  /**
+   * @return the parsed schema, or null if the text is not a valid Avro schema given the types the parser knows
+   */
+  static Schema parse(final Schema.Parser parser, final String schema) {
+    try {
+      return parser.parse(schema);
+    } catch (AvroRuntimeException e) {
+      // not only SchemaParseException: duplicate field names, for one, fail with an AvroRuntimeException
+      return null;
+    }
+  }
+
+  /**
+   * Parses a schema which may reference named types defined elsewhere.
+   * @param types named types the schema may reference without defining them, null if none
+   * @return the parsed schema, or null if the text is not a valid Avro schema
+   */
+  static Schema parse(final String schema, final Map<String, Schema> types) {
+    if (types != null && !types.isEmpty()) {
+      final Schema parsed = parse(new Schema.Parser().addTypes(types), schema);
+      if (parsed != null) {
+        return parsed;
+      }
+    }
+    // the schema may define the types itself, as minified schemas do
+    return parse(schema);
+  }
+
+  /**
+   * @return the Avro schema of the file, parsed against the types of the schemas it references if ordered by
+   * references, see {@link SchemaGraph}; null if the file is not a valid Avro schema
+   */
+  static Schema parse(final SchemaFile schemaFile) {
+    return schemaFile.getTypes() != null ? schemaFile.getAvroSchema() : parse(schemaFile.getSchema());
+  }
+
+  /**
+   * 64 bit fingerprint of the schema's parsing canonical form, which ignores formatting, attribute order,
+   * documentation and other attributes irrelevant to reading data.
+   */
+  static long fingerprint(final Schema schema) {
+    return SchemaNormalization.parsingFingerprint64(schema);
+  }
+
+}
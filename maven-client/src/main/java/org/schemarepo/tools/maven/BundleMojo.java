@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProjectHelper;
+
+/**
+ * Implements bundle goal of schema-repo plugin: packs the schema files discovered in the schema directory, along with
+ * their subject names, into a single compressed {@link SchemaBundle} (<pre>bundleFile</pre>), which
+ * <pre>import-schemas</pre> registers without walking a directory.
+ * <p>The bundle is attached to the project (<pre>attachBundle</pre>, defaults to <pre>true</pre>) with type
+ * <pre>srb</pre> and classifier <pre>schemas</pre>, so it gets installed and deployed along with the main artifact
+ * and can be promoted between environments like any other artifact.</p>
+ * <p>Discovery, subject naming and encoding are configured as for <pre>register-schemas</pre>. The schema-repo is
+ * not contacted.</p>
+ */
+@Mojo( name = "bundle-schemas", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class BundleMojo extends AbstractSchemaRepoMojo {
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "bundleFile",
+      defaultValue = "${project.build.directory}/${project.build.finalName}-" + SchemaBundle.CLASSIFIER + "."
+          + SchemaBundle.TYPE)
+  File bundleFile;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "attachBundle", defaultValue = "true")
+  boolean attachBundle;
+
+  @Component
+  MavenProjectHelper projectHelper;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    verifySchemaDir();
+    final SchemaSet schemaSet = createSchemaSet(null);
+
+    final long start = System.currentTimeMillis();
+    final int[] failed = new int[1];
+    final SchemaBundle.Writer writer;
+    try {
+      writer = new SchemaBundle.Writer(bundleFile);
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to create schema bundle %s", bundleFile), e);
+    }
+    final SchemaWalker walker;
+    try (final SchemaBundle.Writer bundle = writer) {
+      walker = SchemaWalker.read(schemaSet, null, new SchemaWalker.Consumer<IOException>() {
+        @Override
+        public void accept(final SchemaFile schemaFile) throws IOException {
+          bundle.add(schemaFile);
+        }
+
+        @Override
+        public void failed(final Path path, final Exception e) {
+          failed[0]++;
+          getLog().error(format("Failed to bundle %s, could not read it or determine subject name", path), e);
+        }
+      });
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to write schema bundle %s", bundleFile), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while bundling schemas", e);
+    }
+    if (walker.getError() != null) {
+      throw new MojoExecutionException(format("Failed to walk %s", schemaDir), walker.getError());
+    }
+    if (failed[0] > 0) {
+      throw new MojoFailureException(this, "Schema bundling failed",
+          format("%s schemas could not be bundled, see above errors", failed[0]));
+    }
+    getLog().info(format("Bundled %s schemas into %s (%s bytes) in %s ms", writer.getEntryCnt(), bundleFile,
+        bundleFile.length(), System.currentTimeMillis() - start));
+    if (attachBundle) {
+      projectHelper.attachArtifact(project, SchemaBundle.TYPE, SchemaBundle.CLASSIFIER, bundleFile);
+    }
+  }
+
+}
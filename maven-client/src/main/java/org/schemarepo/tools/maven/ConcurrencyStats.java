@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the concurrency of the schema-repo calls evolved during a run, as driven by an {@link AdaptiveLimiter}:
+ * the limit's range and its changes over time, the average number of calls actually in flight and the time spent
+ * waiting for the limit or the rate cap.
+ * Safe for concurrent use.
+ */
+class ConcurrencyStats {
+
+  /** Limit changes kept for the report, later ones are dropped. */
+  static final int MAX_TIMELINE_SIZE = 1000;
+
+  private final long startNanos = System.nanoTime();
+  private boolean enabled;
+  private int initialLimit;
+  private int limit;
+  private int minLimit = Integer.MAX_VALUE;
+  private int maxLimit;
+  private final List<long[]> timeline = new ArrayList<>();
+  private int inFlight;
+  private long lastInFlightChangeNanos = startNanos;
+  /** Integral of the calls in flight over time. */
+  private double inFlightNanos;
+  private long waitNanos;
+
+  synchronized void start(final int initialLimit) {
+    enabled = true;
+    this.initialLimit = initialLimit;
+    limit(initialLimit);
+  }
+
+  synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Records the current limit, rounded down to whole calls.
+   */
+  synchronized void limit(final int limit) {
+    if (limit == this.limit && !timeline.isEmpty()) {
+      return;
+    }
+    this.limit = limit;
+    minLimit = Math.min(minLimit, limit);
+    maxLimit = Math.max(maxLimit, limit);
+    if (timeline.size() < MAX_TIMELINE_SIZE) {
+      timeline.add(new long[] {TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), limit});
+    }
+  }
+
+  synchronized void inFlight(final int inFlight) {
+    final long now = System.nanoTime();
+    inFlightNanos += (double) this.inFlight * (now - lastInFlightChangeNanos);
+    lastInFlightChangeNanos = now;
+    this.inFlight = inFlight;
+  }
+
+  synchronized void waited(final long nanos) {
+    waitNanos += nanos;
+  }
+
+  /**
+   * @return average number of calls in flight since the start
+   */
+  synchronized double getMeanInFlight() {
+    final long now = System.nanoTime();
+    final double total = inFlightNanos + (double) inFlight * (now - lastInFlightChangeNanos);
+    return now > startNanos ? total / (now - startNanos) : 0;
+  }
+
+  synchronized void writeTo(final JsonWriter json) throws IOException {
+    json.beginObject()
+        .name("initialLimit").value(initialLimit)
+        .name("finalLimit").value(limit)
+        .name("minLimit").value(minLimit)
+        .name("maxLimit").value(maxLimit)
+        .name("meanInFlight").value(getMeanInFlight())
+        .name("waitMillis").value(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    json.name("timeline").beginArray();
+    for (long[] change : timeline) {
+      json.beginObject()
+          .name("atMillis").value(change[0])
+          .name("limit").value(change[1])
+          .endObject();
+    }
+    json.endArray();
+    json.endObject();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("limit %s..%s (started at %s, ended at %s), %.1f calls in flight on average, %s ms waiting",
+        minLimit, maxLimit, initialLimit, limit, getMeanInFlight(), TimeUnit.NANOSECONDS.toMillis(waitNanos));
+  }
+
+}
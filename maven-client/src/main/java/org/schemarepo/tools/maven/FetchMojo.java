@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.schemarepo.Repository;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.Subject;
+
+/**
+ * Implements fetch goal of schema-repo plugin: downloads the schemas of selected subjects (<pre>subjects</pre>)
+ * into <pre>outputDirectory</pre>, which is added to the project's resources, so that consumers can load them from
+ * the classpath instead of the schema-repo.
+ * <p>Each subject is given either as <pre>name</pre>, for its latest version, or as <pre>name:id</pre>, for a specific
+ * version. The former is saved as <pre>name</pre> followed by <pre>schemaFileExt</pre>, the latter as
+ * <pre>name-id</pre> followed by <pre>schemaFileExt</pre>, using <pre>encoding</pre>. Characters which are not valid
+ * in file names on every OS are percent-encoded, and subjects whose files would only differ by case are rejected.</p>
+ * <p>Versions are immutable, so they are kept in a local cache (<pre>cacheDir</pre>, shared by all the builds of the
+ * machine) keyed by schema-repo, subject and version ID: a build fetching specific versions only contacts the
+ * schema-repo for those missing from the cache. Latest versions are always looked up, and cached by their ID.</p>
+ * <p>Subjects are fetched concurrently (<pre>threads</pre>), with the same retries as registration.</p>
+ * <p>Optionally (<pre>idIndex</pre>), the IDs of the fetched Avro schemas are written to an index, see
+ * {@link SchemaIdIndex}.</p>
+ */
+@Mojo( name = "fetch-schemas", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class FetchMojo extends AbstractSchemaRepoMojo {
+
+  /** Separates the subject name from the version ID in {@link #subjects}. */
+  static final char VERSION_SEPARATOR = ':';
+
+  @Parameter(required = true, property = REPO_CLIENT_PROPERTY_PREFIX + "subjects")
+  List<String> subjects;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "outputDirectory",
+      defaultValue = "${project.build.directory}/generated-resources/schema-repo")
+  File outputDirectory;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "cacheDir", defaultValue = "${user.home}/.schema-repo/cache")
+  File cacheDir;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    verifyServerURL();
+    verifyThreads();
+    final Charset charset = resolveEncoding();
+    schemaFileExt = schemaFileExt != null ? schemaFileExt : "";
+    final List<String[]> requested = parseSubjects();
+    final SchemaIdIndex index = createIdIndex();
+    final SchemaCache cache = new SchemaCache(cacheDir, serverURL);
+    try {
+      Files.createDirectories(outputDirectory.toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to create output directory %s", outputDirectory), e);
+    }
+
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics);
+    final RetryingInvoker invoker = createInvoker(metrics);
+    // looks the subjects up on the first cache miss only
+    final SubjectCache subjectCache = new SubjectCache(client, getLog(), invoker, subjectLookupThreshold);
+    final List<String> subjectNames = new ArrayList<>();
+    for (String[] subjectAndId : requested) {
+      subjectNames.add(subjectAndId[0]);
+    }
+    subjectCache.expect(subjectNames);
+    final AtomicInteger cached = new AtomicInteger();
+    int failed = 0;
+
+    final AtomicInteger threadCnt = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "schema-repo-fetch-" + threadCnt.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      final List<Future<File>> results = new ArrayList<>();
+      for (final String[] subjectAndId : requested) {
+        results.add(executor.submit(new Callable<File>() {
+          @Override
+          public File call() throws Exception {
+            return fetch(subjectCache, invoker, cache, cached, index, charset, subjectAndId[0], subjectAndId[1]);
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          getLog().debug(format("Saved %s to %s", subjects.get(i), results.get(i).get()));
+        } catch (ExecutionException e) {
+          failed++;
+          getLog().error(format("Failed to fetch %s", subjects.get(i)), e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while fetching schemas", e);
+    } finally {
+      executor.shutdownNow();
+      metrics.finish();
+      invoker.close();
+      closeRepositoryClientFactory(clientFactory);
+    }
+    getLog().info(format("Fetched %s schemas into %s in %s ms, %s from the cache, schema-repo %s",
+        requested.size() - failed, outputDirectory, metrics.getWallMillis(), cached.get(), metrics.requests));
+
+    if (failed > 0) {
+      throw new MojoFailureException(this, "Schema fetch failed",
+          format("%s schemas could not be fetched from the schema-repo, see above errors", failed));
+    }
+    final Resource resource = new Resource();
+    resource.setDirectory(outputDirectory.getAbsolutePath());
+    project.addResource(resource);
+    writeIdIndex(index);
+  }
+
+  /**
+   * @return subject name and version ID (null for the latest version) of each requested schema
+   */
+  private List<String[]> parseSubjects() throws MojoExecutionException {
+    final List<String[]> requested = new ArrayList<>(subjects.size());
+    // keyed by lower case file name, as file systems may be case-insensitive
+    final Map<String, String> outputFiles = new HashMap<>();
+    for (String subject : subjects) {
+      final String trimmed = subject.trim();
+      final int separator = trimmed.lastIndexOf(VERSION_SEPARATOR);
+      final String subjectName = separator >= 0 ? trimmed.substring(0, separator) : trimmed;
+      final String id = separator >= 0 ? trimmed.substring(separator + 1) : null;
+      if (subjectName.isEmpty() || id != null && id.isEmpty()) {
+        throw new MojoExecutionException(format(
+            "Invalid <subjects> parameter value %s -- must be either subject or subject%sid", subject, VERSION_SEPARATOR));
+      }
+      requested.add(new String[] {subjectName, id});
+      final String previous = outputFiles.put(outputFileName(subjectName, id).toLowerCase(Locale.ROOT), subject);
+      if (previous != null && !previous.equals(subject)) {
+        throw new MojoExecutionException(format(
+            "Invalid <subjects> parameter value %s -- %s and %s would be saved to the same file", subjects, previous,
+            subject));
+      }
+    }
+    return requested;
+  }
+
+  private String outputFileName(final String subjectName, final String id) {
+    return fileName(subjectName) + (id != null ? "-" + fileName(id) : "") + schemaFileExt;
+  }
+
+  /**
+   * @return the name, with the characters which are not valid in file names on every OS percent-encoded, as well as a
+   * leading dot (hidden files, '..'), a trailing dot or space, and the first character of a device name reserved by
+   * Windows
+   */
+  static String fileName(final String name) {
+    final boolean reserved = SchemaCache.RESERVED_NAME.matcher(name).matches();
+    final StringBuilder fileName = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      final char c = name.charAt(i);
+      if (c < 0x20 || "/\\:*?\"<>|%".indexOf(c) >= 0 || i == 0 && (c == '.' || reserved)
+          || i == name.length() - 1 && (c == '.' || c == ' ')) {
+        fileName.append(format("%%%02X", (int) c));
+      } else {
+        fileName.append(c);
+      }
+    }
+    return fileName.toString();
+  }
+
+  /**
+   * Fetches a single schema, from the cache if possible, and saves it to the output directory.
+   * Records the ID of Avro schemas in the index, if any.
+   * @param id version ID, null for the latest version
+   * @return the saved file
+   */
+  private File fetch(final SubjectCache subjectCache, final RetryingInvoker invoker, final SchemaCache cache,
+      final AtomicInteger cached, final SchemaIdIndex index, final Charset charset, final String subjectName,
+      final String id) throws Exception {
+    String schema = id != null ? cache.get(subjectName, id) : null;
+    String schemaId = id;
+    if (schema != null) {
+      cached.incrementAndGet();
+    } else {
+      final Subject subject = subjectCache.get(subjectName);
+      if (subject == null) {
+        throw new IllegalArgumentException(format("Subject %s does not exist", subjectName));
+      }
+      final SchemaEntry entry = invoker.invoke(id != null ? RegistrationMetrics.Phase.VERSION_LOOKUP
+          : RegistrationMetrics.Phase.LATEST_LOOKUP, new Callable<SchemaEntry>() {
+        @Override
+        public SchemaEntry call() {
+          return id != null ? subject.lookupById(id) : subject.latest();
+        }
+      });
+      if (entry == null) {
+        throw new IllegalArgumentException(id != null ? format("Subject %s has no version %s", subjectName, id)
+            : format("Subject %s has no versions", subjectName));
+      }
+      schema = entry.getSchema();
+      schemaId = entry.getId();
+      try {
+        cache.put(subjectName, entry.getId(), schema);
+      } catch (IOException e) {
+        // not fatal, the next build will just fetch it again
+        getLog().warn(format("Failed to cache version %s of subject %s in %s", entry.getId(), subjectName, cache), e);
+      }
+    }
+    if (index != null) {
+      index.add(subjectName, schema, schemaId);
+    }
+    final File file = new File(outputDirectory, outputFileName(subjectName, id));
+    Files.write(file.toPath(), schema.getBytes(charset));
+    return file;
+  }
+
+}
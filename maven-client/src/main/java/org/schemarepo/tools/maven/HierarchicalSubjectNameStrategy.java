@@ -21,9 +21,6 @@ package org.schemarepo.tools.maven;
 import static org.schemarepo.tools.maven.PropertyKeys.HIERARCHICAL_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Properties;
 
 /**
@@ -39,20 +36,11 @@ public class HierarchicalSubjectNameStrategy extends DefaultSubjectNameStrategy
 
   @Override
   public String getSubjectName(final Path schemaPath) {
-    final List<String> ancestors = new ArrayList<>();
-    Path ancestorPath = schemaPath;
-    for (int level = 0; level < numberOfAncestors; level++) {
-      ancestorPath = ancestorPath.getParent();
-      if (ancestorPath == null) {
-        break;
-      }
-      ancestors.add(ancestorPath.getFileName().toString());
-    }
-
-    Collections.reverse(ancestors);
+    // walk the name elements by index rather than collecting and reversing the ancestors, this runs once per schema file
+    final int fileNameIndex = schemaPath.getNameCount() - 1;
     final StringBuilder subjectName = new StringBuilder();
-    for (String ancestor : ancestors) {
-      subjectName.append(ancestor).append(separator);
+    for (int i = Math.max(0, fileNameIndex - numberOfAncestors); i < fileNameIndex; i++) {
+      subjectName.append(schemaPath.getName(i)).append(separator);
     }
     return subjectName.append(super.getSubjectName(schemaPath)).toString();
   }
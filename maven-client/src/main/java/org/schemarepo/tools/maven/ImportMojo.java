@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Implements import goal of schema-repo plugin: registers the schemas of a bundle produced by
+ * <pre>bundle-schemas</pre> (<pre>bundleFile</pre>), typically when promoting them from one environment to the next.
+ * <p>The bundle is memory-mapped and only its index is decoded upfront: schemas recorded in the registration manifest
+ * are skipped on their index entry, the others are inflated right before being handed over to the registration
+ * workers. The subject names are those computed when bundling, so no subject name strategy is involved.</p>
+ * <p>Apart from discovery, registration works, and is configured, as for <pre>register-schemas</pre>, which this goal
+ * extends: the registration manifest, <pre>force</pre>, <pre>registerAtEnd</pre> (along with modules registering their
+ * schema directory), <pre>validate</pre>, <pre>orderByReferences</pre>, the mirrors, the report, the ID index and the
+ * connection and retry settings all apply. Only the parameters of discovery and naming, which were applied when
+ * bundling, are ignored: <pre>schemaDir</pre>, <pre>schemaFileExt</pre>, <pre>schemaIncludes</pre>,
+ * <pre>schemaExcludes</pre>, <pre>discoveryThreads</pre>, <pre>subjectNameStrategyClass</pre> and
+ * <pre>encoding</pre>.</p>
+ */
+@Mojo( name = ImportMojo.GOAL, threadSafe = true)
+public class ImportMojo extends RepoClientMojo {
+
+  static final String GOAL = "import-schemas";
+
+  @Parameter(required = true, property = REPO_CLIENT_PROPERTY_PREFIX + "bundleFile")
+  File bundleFile;
+
+  /**
+   * @return the schemas of the bundle
+   */
+  @Override
+  SchemaSet createSchemaSet() throws MojoExecutionException {
+    if (!bundleFile.isAbsolute()) {
+      bundleFile = new File(project.getBasedir(), bundleFile.getPath());
+    }
+    final SchemaBundle bundle;
+    try {
+      bundle = SchemaBundle.open(bundleFile);
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Invalid <bundleFile> parameter value %s -- not a readable schema bundle",
+          bundleFile), e);
+    }
+    getLog().info(format("Importing %s schemas from %s", bundle.getEntries().size(), bundleFile));
+    return new SchemaSet(project.getId(), bundle, loadManifest());
+  }
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.schemarepo.Repository;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaValidationException;
+import org.schemarepo.Subject;
+import org.schemarepo.SubjectConfig;
+
+/**
+ * Repository decorator counting the requests made through it (and through the subjects it hands out).
+ */
+class InstrumentedRepository implements Repository, Closeable {
+
+  private final Repository delegate;
+  private final RequestStats stats;
+
+  InstrumentedRepository(final Repository delegate, final RequestStats stats) {
+    this.delegate = delegate;
+    this.stats = stats;
+  }
+
+  @Override
+  public Subject register(final String subjectName, final SubjectConfig config) {
+    stats.request("createSubject");
+    try {
+      return wrap(delegate.register(subjectName, config));
+    } catch (RuntimeException e) {
+      stats.error("createSubject");
+      throw e;
+    }
+  }
+
+  @Override
+  public Subject lookup(final String subjectName) {
+    stats.request("lookup");
+    try {
+      return wrap(delegate.lookup(subjectName));
+    } catch (RuntimeException e) {
+      stats.error("lookup");
+      throw e;
+    }
+  }
+
+  @Override
+  public Iterable<Subject> subjects() {
+    stats.request("subjects");
+    final Iterable<Subject> subjects;
+    try {
+      subjects = delegate.subjects();
+    } catch (RuntimeException e) {
+      stats.error("subjects");
+      throw e;
+    }
+    return new Iterable<Subject>() {
+      @Override
+      public Iterator<Subject> iterator() {
+        final Iterator<Subject> iterator = subjects.iterator();
+        return new Iterator<Subject>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Subject next() {
+            return wrap(iterator.next());
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (delegate instanceof Closeable) {
+      ((Closeable) delegate).close();
+    }
+  }
+
+  private Subject wrap(final Subject subject) {
+    return subject != null ? new InstrumentedSubject(subject) : null;
+  }
+
+  private class InstrumentedSubject extends Subject {
+
+    private final Subject subject;
+
+    InstrumentedSubject(final Subject subject) {
+      super(subject.getName());
+      this.subject = subject;
+    }
+
+    @Override
+    public SchemaEntry register(final String schema) throws SchemaValidationException {
+      stats.request("register");
+      try {
+        return subject.register(schema);
+      } catch (SchemaValidationException e) {
+        stats.error("register");
+        throw e;
+      } catch (RuntimeException e) {
+        stats.error("register");
+        throw e;
+      }
+    }
+
+    @Override
+    public SchemaEntry registerIfLatest(final String schema, final SchemaEntry latest) throws SchemaValidationException {
+      stats.request("registerIfLatest");
+      try {
+        return subject.registerIfLatest(schema, latest);
+      } catch (SchemaValidationException e) {
+        stats.error("registerIfLatest");
+        throw e;
+      } catch (RuntimeException e) {
+        stats.error("registerIfLatest");
+        throw e;
+      }
+    }
+
+    @Override
+    public SchemaEntry lookupBySchema(final String schema) {
+      stats.request("lookupBySchema");
+      try {
+        return subject.lookupBySchema(schema);
+      } catch (RuntimeException e) {
+        stats.error("lookupBySchema");
+        throw e;
+      }
+    }
+
+    @Override
+    public SchemaEntry lookupById(final String id) {
+      stats.request("lookupById");
+      try {
+        return subject.lookupById(id);
+      } catch (RuntimeException e) {
+        stats.error("lookupById");
+        throw e;
+      }
+    }
+
+    @Override
+    public SchemaEntry latest() {
+      stats.request("latest");
+      try {
+        return subject.latest();
+      } catch (RuntimeException e) {
+        stats.error("latest");
+        throw e;
+      }
+    }
+
+    @Override
+    public Iterable<SchemaEntry> allEntries() {
+      stats.request("allEntries");
+      try {
+        return subject.allEntries();
+      } catch (RuntimeException e) {
+        stats.error("allEntries");
+        throw e;
+      }
+    }
+
+    @Override
+    public SubjectConfig getConfig() {
+      stats.request("getConfig");
+      try {
+        return subject.getConfig();
+      } catch (RuntimeException e) {
+        stats.error("getConfig");
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean integralKeys() {
+      stats.request("integralKeys");
+      try {
+        return subject.integralKeys();
+      } catch (RuntimeException e) {
+        stats.error("integralKeys");
+        throw e;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer used for the machine-readable reports, so that the plugin does not need
+ * to depend on a particular JSON library. Output is pretty-printed, two spaces per nesting level.
+ * Not thread-safe.
+ */
+class JsonWriter implements Closeable {
+
+  private final Writer out;
+  private int depth;
+  private boolean first = true;
+  private boolean afterName;
+
+  JsonWriter(final Writer out) {
+    this.out = out;
+  }
+
+  JsonWriter beginObject() throws IOException {
+    return open('{');
+  }
+
+  JsonWriter endObject() throws IOException {
+    return close('}');
+  }
+
+  JsonWriter beginArray() throws IOException {
+    return open('[');
+  }
+
+  JsonWriter endArray() throws IOException {
+    return close(']');
+  }
+
+  JsonWriter name(final String name) throws IOException {
+    separate();
+    string(name);
+    out.write(": ");
+    afterName = true;
+    return this;
+  }
+
+  JsonWriter value(final String value) throws IOException {
+    separate();
+    if (value == null) {
+      out.write("null");
+    } else {
+      string(value);
+    }
+    return this;
+  }
+
+  JsonWriter value(final long value) throws IOException {
+    separate();
+    out.write(Long.toString(value));
+    return this;
+  }
+
+  JsonWriter value(final double value) throws IOException {
+    separate();
+    out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+    return this;
+  }
+
+  JsonWriter value(final boolean value) throws IOException {
+    separate();
+    out.write(Boolean.toString(value));
+    return this;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.write('\n');
+    out.close();
+  }
+
+  private JsonWriter open(final char bracket) throws IOException {
+    separate();
+    out.write(bracket);
+    depth++;
+    first = true;
+    return this;
+  }
+
+  private JsonWriter close(final char bracket) throws IOException {
+    depth--;
+    if (!first) {
+      newLine();
+    }
+    out.write(bracket);
+    first = false;
+    return this;
+  }
+
+  private void separate() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (depth > 0) {
+      if (!first) {
+        out.write(',');
+      }
+      newLine();
+    }
+    first = false;
+  }
+
+  private void newLine() throws IOException {
+    out.write('\n');
+    for (int i = 0; i < depth; i++) {
+      out.write("  ");
+    }
+  }
+
+  private void string(final String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+
+}
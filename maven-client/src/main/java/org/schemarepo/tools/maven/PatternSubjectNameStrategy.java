@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.schemarepo.tools.maven.PropertyKeys.PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX;
+import static org.schemarepo.tools.maven.PropertyKeys.SCHEMA_DIR;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strategy determining schema-repo subject name by matching the schema file's path, relative to the schema directory
+ * and with <pre>/</pre> separated elements, against a regular expression (<pre>pattern</pre>, required).
+ * The subject name is built from <pre>template</pre> (defaults to <pre>{1}</pre>), in which <pre>{n}</pre> and
+ * <pre>{name}</pre> are replaced with the numbered or named capture group, optionally transformed with
+ * <pre>{n:lower}</pre>, <pre>{n:upper}</pre> or <pre>{n:capitalize}</pre>. Any <pre>/</pre> in a substituted group is
+ * replaced with <pre>separator</pre> (defaults to <pre>_</pre>).
+ * Paths which don't match fall back to {@link org.schemarepo.tools.maven.DefaultSubjectNameStrategy}, unless
+ * <pre>fallback</pre> is set to <pre>fail</pre>.
+ * For example, pattern <pre>(.+)/v\d+/([^/]+)\.avsc</pre> with template <pre>{1}.{2:capitalize}</pre> maps
+ * <pre>com/acme/v2/order.avsc</pre> to <pre>com_acme.Order</pre>.
+ */
+public class PatternSubjectNameStrategy extends DefaultSubjectNameStrategy {
+
+  static final String FALLBACK_FILE_NAME = "fileName";
+  static final String FALLBACK_FAIL = "fail";
+
+  private static final Pattern REFERENCE = Pattern.compile("\\{(\\d+|[a-zA-Z][a-zA-Z0-9]*)(?::(lower|upper|capitalize))?\\}");
+
+  private Pattern pattern;
+  private String template;
+  private String separator;
+  private boolean failOnMismatch;
+  private Path schemaDir;
+  private Segment[] segments;
+  /** Relative, <pre>/</pre> terminated, form of the directories seen so far; there are far fewer of them than files. */
+  private final ConcurrentMap<Path, String> directories = new ConcurrentHashMap<>();
+
+  @Override
+  public String getSubjectName(final Path schemaPath) {
+    final Matcher matcher = pattern.matcher(relativePath(schemaPath));
+    if (!matcher.matches()) {
+      if (failOnMismatch) {
+        throw new IllegalArgumentException(String.format("%s does not match %s", schemaPath, pattern));
+      }
+      return super.getSubjectName(schemaPath);
+    }
+    final StringBuilder subjectName = new StringBuilder();
+    for (Segment segment : segments) {
+      segment.appendTo(subjectName, matcher, separator);
+    }
+    if (subjectName.length() == 0) {
+      throw new IllegalArgumentException(String.format("Template %s yields an empty subject name for %s", template, schemaPath));
+    }
+    return subjectName.toString();
+  }
+
+  @Override
+  public void configure(final Properties properties) {
+    final String regex = properties.getProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "pattern");
+    if (regex == null || regex.isEmpty()) {
+      throw new IllegalArgumentException("pattern property is required");
+    }
+    pattern = Pattern.compile(regex);
+    template = properties.getProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "template", "{1}");
+    separator = properties.getProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "separator", "_");
+    final String fallback = properties.getProperty(PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX + "fallback", FALLBACK_FILE_NAME);
+    if (!FALLBACK_FILE_NAME.equals(fallback) && !FALLBACK_FAIL.equals(fallback)) {
+      throw new IllegalArgumentException(String.format("fallback property must be either %s or %s", FALLBACK_FILE_NAME, FALLBACK_FAIL));
+    }
+    failOnMismatch = FALLBACK_FAIL.equals(fallback);
+    final String dir = properties.getProperty(SCHEMA_DIR);
+    schemaDir = dir != null ? Paths.get(dir) : null;
+    segments = compile(template, pattern);
+    directories.clear();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[pattern=\"%s\", template=\"%s\", separator=\"%s\", fallback=%s]", super.toString(), pattern,
+        template, separator, failOnMismatch ? FALLBACK_FAIL : FALLBACK_FILE_NAME);
+  }
+
+  private String relativePath(final Path schemaPath) {
+    final Path dir = schemaPath.getParent();
+    String prefix = "";
+    if (dir != null) {
+      prefix = directories.get(dir);
+      if (prefix == null) {
+        prefix = relativeDirectory(dir);
+        directories.putIfAbsent(dir, prefix);
+      }
+    }
+    return prefix + schemaPath.getFileName();
+  }
+
+  private String relativeDirectory(final Path dir) {
+    final Path relative = schemaDir != null && dir.startsWith(schemaDir) ? schemaDir.relativize(dir) : dir;
+    if (relative.toString().isEmpty()) {
+      return "";
+    }
+    final StringBuilder prefix = new StringBuilder();
+    for (Path name : relative) {
+      prefix.append(name).append('/');
+    }
+    return prefix.toString();
+  }
+
+  /**
+   * Splits the template into literals and group references, so applying it needs no parsing.
+   */
+  private static Segment[] compile(final String template, final Pattern pattern) {
+    final int groupCount = pattern.matcher("").groupCount();
+    // Java 7 only resolves group names on a match: an empty alternative matches anything, keeping the group names
+    final Matcher named = Pattern.compile("(?:" + pattern.pattern() + "\n)|").matcher("");
+    final boolean checkNames = named.matches();
+    final List<Segment> compiled = new ArrayList<>();
+    final Matcher reference = REFERENCE.matcher(template);
+    int literalStart = 0;
+    while (reference.find()) {
+      if (reference.start() > literalStart) {
+        compiled.add(new Segment(template.substring(literalStart, reference.start()), null, -1, null));
+      }
+      final String group = reference.group(1);
+      final boolean numbered = Character.isDigit(group.charAt(0));
+      final int index = numbered ? Integer.parseInt(group) : -1;
+      if (numbered && index > groupCount) {
+        throw new IllegalArgumentException(String.format(
+            "Template %s refers to group %s, but the pattern only has %s", template, index, groupCount));
+      }
+      if (!numbered && checkNames) {
+        try {
+          named.group(group);
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(String.format(
+              "Template %s refers to group %s, but the pattern has no group of that name", template, group), e);
+        }
+      }
+      compiled.add(new Segment(null, numbered ? null : group, index, reference.group(2)));
+      literalStart = reference.end();
+    }
+    if (literalStart < template.length()) {
+      compiled.add(new Segment(template.substring(literalStart), null, -1, null));
+    }
+    return compiled.toArray(new Segment[compiled.size()]);
+  }
+
+  private static final class Segment {
+
+    private final String literal;
+    private final String groupName;
+    private final int groupIndex;
+    private final String transform;
+
+    Segment(final String literal, final String groupName, final int groupIndex, final String transform) {
+      this.literal = literal;
+      this.groupName = groupName;
+      this.groupIndex = groupIndex;
+      this.transform = transform;
+    }
+
+    void appendTo(final StringBuilder subjectName, final Matcher matcher, final String separator) {
+      if (literal != null) {
+        subjectName.append(literal);
+        return;
+      }
+      String value = groupName != null ? matcher.group(groupName) : matcher.group(groupIndex);
+      if (value == null || value.isEmpty()) {
+        return;
+      }
+      value = value.replace("/", separator);
+      if ("lower".equals(transform)) {
+        value = value.toLowerCase(Locale.ROOT);
+      } else if ("upper".equals(transform)) {
+        value = value.toUpperCase(Locale.ROOT);
+      } else if ("capitalize".equals(transform)) {
+        value = value.substring(0, 1).toUpperCase(Locale.ROOT) + value.substring(1);
+      }
+      subjectName.append(value);
+    }
+
+  }
+
+}
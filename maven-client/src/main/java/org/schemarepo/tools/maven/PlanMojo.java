@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.apache.avro.Schema;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.schemarepo.Repository;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.Subject;
+
+/**
+ * Implements plan goal of schema-repo plugin: previews what <pre>register-schemas</pre> would do, without changing
+ * the schema-repo. Discovers the schema files and derives their subjects the same way, then compares each subject's
+ * schemas with its latest version, telling which subjects would be created, which would get new versions and
+ * which are unchanged. The plan is logged and written to <pre>planFile</pre> as JSON.
+ * <p>The subjects are listed once, and the latest versions of the affected subjects are fetched concurrently
+ * (<pre>threads</pre>), while the directory walk goes on. The registration manifest is not used, as the plan is
+ * about the schema-repo's current state.</p>
+ * <p>Each schema is compared with the latest version, or with the previous schema of the same subject planned to be
+ * registered. Registration does not create a new version for a schema identical to an older one, which the plan does
+ * not look for, so it may overestimate new versions in that case.</p>
+ */
+@Mojo( name = "plan-schemas", defaultPhase = LifecyclePhase.VERIFY, threadSafe = true)
+public class PlanMojo extends AbstractSchemaRepoMojo {
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "planFile",
+      defaultValue = "${project.build.directory}/schema-repo/plan.json")
+  File planFile;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    verifyServerURL();
+    verifySchemaDir();
+    verifyThreads();
+    final SchemaSet schemaSet = createSchemaSet(null);
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics);
+    final RetryingInvoker invoker = createInvoker(metrics);
+    final SubjectCache subjects = new SubjectCache(client, getLog(), invoker, subjectLookupThreshold);
+    final SchemaPlan plan = new SchemaPlan();
+
+    // same striping as registration: a subject's schemas are planned one after another, in discovery order
+    final RegistrationWorkers workers = new RegistrationWorkers(threads);
+    final SchemaWalker walker;
+    try {
+      walker = SchemaWalker.read(schemaSet, metrics, new SchemaWalker.Consumer<RuntimeException>() {
+        @Override
+        public void accept(final SchemaFile schemaFile) {
+          workers.submit(schemaFile.getSubjectName(), new Runnable() {
+            @Override
+            public void run() {
+              try {
+                planSchema(subjects, invoker, plan, schemaFile);
+              } catch (Exception e) {
+                plan.failed.incrementAndGet();
+                getLog().error(format("Failed to plan %s under subject %s", schemaFile,
+                    schemaFile.getSubjectName()), e);
+              }
+            }
+          });
+        }
+
+        @Override
+        public void failed(final Path path, final Exception e) {
+          plan.failed.incrementAndGet();
+          getLog().error(format("Failed to plan %s, could not read it or determine subject name", path), e);
+        }
+      });
+      workers.awaitCompletion();
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while waiting for the plan to complete", e);
+    } finally {
+      metrics.finish();
+      invoker.close();
+      closeRepositoryClientFactory(clientFactory);
+    }
+    if (walker.getError() != null) {
+      throw new MojoExecutionException(format("Failed to walk %s", schemaDir), walker.getError());
+    }
+    getLog().info(format("Planning %s schemas took %s ms, schema-repo %s", metrics.found.get(), metrics.getWallMillis(),
+        metrics.requests));
+    plan.log(getLog());
+    writePlan(plan);
+
+    if (plan.failed.get() > 0) {
+      throw new MojoFailureException(this, "Schema plan failed",
+          format("%s schemas could not be compared with the schema-repo, see above errors", plan.failed.get()));
+    }
+  }
+
+  /**
+   * Compares the schema with its subject's latest version, fetching the latter on the subject's first schema.
+   * Invoked by the workers, which guarantee that calls for the same subject are never concurrent.
+   */
+  private void planSchema(final SubjectCache subjects, final RetryingInvoker invoker, final SchemaPlan plan,
+      final SchemaFile schemaFile) throws Exception {
+    final String subjectName = schemaFile.getSubjectName();
+    SchemaPlan.SubjectPlan subjectPlan = plan.get(subjectName);
+    if (subjectPlan == null) {
+      final Subject subject = subjects.get(subjectName);
+      final SchemaEntry latest = subject == null ? null
+          : invoker.invoke(RegistrationMetrics.Phase.LATEST_LOOKUP, new Callable<SchemaEntry>() {
+            @Override
+            public SchemaEntry call() {
+              return subject.latest();
+            }
+          });
+      subjectPlan = plan.add(subjectName);
+      subjectPlan.setCurrent(subject != null, latest != null ? latest.getId() : null, latest != null ? latest.getSchema() : null);
+    }
+    subjectPlan.add(schemaFile.getKey(), compare(subjectPlan.getLatestSchema(), schemaFile), schemaFile.getSchema());
+  }
+
+  private SchemaPlan.Change compare(final String latestSchema, final SchemaFile schemaFile) {
+    if (latestSchema == null) {
+      return SchemaPlan.Change.NEW_VERSION;
+    }
+    if (latestSchema.equals(schemaFile.getSchema())) {
+      return SchemaPlan.Change.UNCHANGED;
+    }
+    if (skipEquivalent && AvroSchemas.isAvroSchemaFile(schemaFile.getKey())) {
+      final Schema schema = AvroSchemas.parse(schemaFile.getSchema());
+      final Schema latest = schema != null ? AvroSchemas.parse(latestSchema) : null;
+      if (latest != null && AvroSchemas.fingerprint(latest) == AvroSchemas.fingerprint(schema)) {
+        return SchemaPlan.Change.EQUIVALENT;
+      }
+    }
+    return SchemaPlan.Change.NEW_VERSION;
+  }
+
+  private void writePlan(final SchemaPlan plan) {
+    if (planFile == null) {
+      return;
+    }
+    try {
+      plan.write(planFile, serverURL);
+      getLog().info(format("Wrote schema plan to %s", planFile));
+    } catch (IOException e) {
+      getLog().warn(format("Failed to write schema plan %s", planFile), e);
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Log prefixing every message, to tell apart the interleaved output of concurrent sessions.
+ */
+class PrefixedLog implements Log {
+
+  private final Log log;
+  private final String prefix;
+
+  PrefixedLog(final Log log, final String prefix) {
+    this.log = log;
+    this.prefix = prefix;
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return log.isDebugEnabled();
+  }
+
+  @Override
+  public void debug(final CharSequence content) {
+    log.debug(prefix + content);
+  }
+
+  @Override
+  public void debug(final CharSequence content, final Throwable error) {
+    log.debug(prefix + content, error);
+  }
+
+  @Override
+  public void debug(final Throwable error) {
+    log.debug(prefix + error, error);
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return log.isInfoEnabled();
+  }
+
+  @Override
+  public void info(final CharSequence content) {
+    log.info(prefix + content);
+  }
+
+  @Override
+  public void info(final CharSequence content, final Throwable error) {
+    log.info(prefix + content, error);
+  }
+
+  @Override
+  public void info(final Throwable error) {
+    log.info(prefix + error, error);
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return log.isWarnEnabled();
+  }
+
+  @Override
+  public void warn(final CharSequence content) {
+    log.warn(prefix + content);
+  }
+
+  @Override
+  public void warn(final CharSequence content, final Throwable error) {
+    log.warn(prefix + content, error);
+  }
+
+  @Override
+  public void warn(final Throwable error) {
+    log.warn(prefix + error, error);
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return log.isErrorEnabled();
+  }
+
+  @Override
+  public void error(final CharSequence content) {
+    log.error(prefix + content);
+  }
+
+  @Override
+  public void error(final CharSequence content, final Throwable error) {
+    log.error(prefix + content, error);
+  }
+
+  @Override
+  public void error(final Throwable error) {
+    log.error(prefix + error, error);
+  }
+
+}
@@ -26,6 +26,11 @@ public class PropertyKeys {
   public static final String REPO_CLIENT_PROPERTY_PREFIX = "schema-repo.tools.registration.";
   public static final String HIERARCHICAL_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX =
       REPO_CLIENT_PROPERTY_PREFIX + "hierarchicalSubjectNameStrategy.";
+  public static final String PATTERN_SUBJECT_NAME_STRATEGY_PROPERTIES_PREFIX =
+      REPO_CLIENT_PROPERTY_PREFIX + "patternSubjectNameStrategy.";
+  /** Absolute path of the schema directory, handed to subject name strategies. */
+  public static final String SCHEMA_DIR = REPO_CLIENT_PROPERTY_PREFIX + "schemaDir";
+  public static final String HTTP_PROPERTIES_PREFIX = REPO_CLIENT_PROPERTY_PREFIX + "http.";
 
   private PropertyKeys() {}
 }
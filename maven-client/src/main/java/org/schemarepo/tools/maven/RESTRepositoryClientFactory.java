@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.HTTP_PROPERTIES_PREFIX;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.schemarepo.Repository;
+import org.schemarepo.client.RESTRepositoryClient;
+import org.schemarepo.json.GsonJsonUtil;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
+
+/**
+ * Default factory, creating schema-repo's own {@link RESTRepositoryClient}.
+ * The created clients send their requests through a Jersey client owned by the factory, running on Apache HttpClient
+ * with a pool of persistent connections, configured with <pre>keepAlive</pre> (whether to reuse connections, defaults
+ * to <pre>true</pre>), <pre>maxConnections</pre> (connections per schema-repo, defaults to 5), <pre>connectTimeout</pre>
+ * and <pre>readTimeout</pre> (in milliseconds, defaults to 10 and 60 seconds respectively), all prefixed with
+ * <pre>schema-repo.tools.registration.http.</pre>.
+ * <p>RESTRepositoryClient can't be handed a transport, so the one it creates for itself is destroyed and replaced
+ * through its WebResource field. {@link #close()} destroys the factory's transport, closing the pooled
+ * connections.</p>
+ */
+public class RESTRepositoryClientFactory implements RepositoryClientFactory {
+
+  static final String KEEP_ALIVE = "keepAlive";
+  static final String MAX_CONNECTIONS = "maxConnections";
+  static final String CONNECT_TIMEOUT = "connectTimeout";
+  static final String READ_TIMEOUT = "readTimeout";
+  static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong reusedConnectionRequests = new AtomicLong();
+  private boolean keepAlive = true;
+  private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+  private int connectTimeout = 10000;
+  private int readTimeout = 60000;
+  private PoolingClientConnectionManager connectionManager;
+  private Client transport;
+  private int servers;
+
+  @Override
+  public Repository createClient(final String serverURL) {
+    final RESTRepositoryClient repositoryClient = new RESTRepositoryClient(serverURL, new GsonJsonUtil(), false);
+    final Field field = webResourceField();
+    try {
+      final WebResource own = (WebResource) field.get(repositoryClient);
+      field.set(repositoryClient, transport().resource(serverURL));
+      if (own != null && own.getHeadHandler() instanceof Client) {
+        ((Client) own.getHeadHandler()).destroy();
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(format("Failed to set up the HTTP transport of the client of %s", serverURL), e);
+    }
+    return repositoryClient;
+  }
+
+  @Override
+  public void configure(final Properties properties) {
+    keepAlive = Boolean.parseBoolean(properties.getProperty(HTTP_PROPERTIES_PREFIX + KEEP_ALIVE, "true").trim());
+    maxConnections = positiveInt(MAX_CONNECTIONS,
+        properties.getProperty(HTTP_PROPERTIES_PREFIX + MAX_CONNECTIONS, Integer.toString(DEFAULT_MAX_CONNECTIONS)));
+    connectTimeout = positiveInt(CONNECT_TIMEOUT, properties.getProperty(HTTP_PROPERTIES_PREFIX + CONNECT_TIMEOUT, "10000"));
+    readTimeout = positiveInt(READ_TIMEOUT, properties.getProperty(HTTP_PROPERTIES_PREFIX + READ_TIMEOUT, "60000"));
+  }
+
+  @Override
+  public synchronized void close() {
+    if (transport != null) {
+      transport.destroy();
+      connectionManager.shutdown();
+      transport = null;
+      connectionManager = null;
+    }
+  }
+
+  int getMaxConnections() {
+    return maxConnections;
+  }
+
+  /**
+   * @return description of how many of the requests sent so far went over a connection which already served one
+   */
+  String describeConnectionReuse() {
+    final long sent = requests.get();
+    final long reused = reusedConnectionRequests.get();
+    return format("HTTP connections reused by %s of %s requests (%.1f%%)", reused, sent, sent > 0 ? 100.0 * reused / sent : 0);
+  }
+
+  /**
+   * Creates the transport on first use, growing its pool by {@link #maxConnections} for each further schema-repo.
+   */
+  private synchronized Client transport() {
+    if (transport == null) {
+      connectionManager = new PoolingClientConnectionManager();
+      connectionManager.setDefaultMaxPerRoute(maxConnections);
+      final HttpParams params = new BasicHttpParams();
+      HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+      HttpConnectionParams.setSoTimeout(params, readTimeout);
+      final DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager, params);
+      if (!keepAlive) {
+        httpClient.setReuseStrategy(new NoConnectionReuseStrategy());
+      }
+      httpClient.addRequestInterceptor(new HttpRequestInterceptor() {
+        @Override
+        public void process(final HttpRequest request, final HttpContext context) throws IOException {
+          requests.incrementAndGet();
+          final Object connection = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+          if (connection instanceof HttpConnection && ((HttpConnection) connection).getMetrics().getRequestCount() > 0) {
+            reusedConnectionRequests.incrementAndGet();
+          }
+        }
+      });
+      transport = new ApacheHttpClient4(new ApacheHttpClient4Handler(httpClient, null, false), new DefaultClientConfig());
+    }
+    connectionManager.setMaxTotal(maxConnections * ++servers);
+    return transport;
+  }
+
+  private static Field webResourceField() {
+    for (Field field : RESTRepositoryClient.class.getDeclaredFields()) {
+      if (WebResource.class.isAssignableFrom(field.getType())) {
+        field.setAccessible(true);
+        return field;
+      }
+    }
+    throw new IllegalStateException(format(
+        "%s does not send its requests through a Jersey WebResource, the HTTP transport can't be set up",
+        RESTRepositoryClient.class.getName()));
+  }
+
+  private static int positiveInt(final String name, final String value) {
+    final int parsed = Integer.parseInt(value.trim());
+    if (parsed < 1) {
+      throw new IllegalArgumentException(name + " property must be a positive integer");
+    }
+    return parsed;
+  }
+
+  @Override
+  public String toString() {
+    return format("%s{keepAlive=%s, maxConnections=%s, connectTimeout=%s, readTimeout=%s}",
+        getClass().getName(), keepAlive, maxConnections, connectTimeout, readTimeout);
+  }
+
+}
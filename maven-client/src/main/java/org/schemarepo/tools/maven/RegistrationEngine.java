@@ -0,0 +1,634 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Schema;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.schemarepo.Repository;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.Subject;
+
+/**
+ * Registration of schema sets with a schema-repo, independent of Maven's project model so that it can be driven both
+ * by the <pre>register-schemas</pre> family of goals and by the command line client.
+ * The caller provides the connection, the retry/hedging policy and the metrics, and closes them once done.
+ * Options mirror the goal's parameters of the same name.
+ */
+class RegistrationEngine {
+
+  /**
+   * One of the schema-repos of a fan-out, see {@link #register(List, List, int, SchemaIdIndex)}, with its own state.
+   * The caller closes the invoker once done.
+   */
+  static final class Target {
+
+    /** Registering with the target's schema-repo, logging and reporting on its own. */
+    final RegistrationEngine engine;
+    final Repository client;
+    final RetryingInvoker invoker;
+    final RegistrationMetrics metrics;
+    /** Manifest of each schema set, recording what got registered with the target. */
+    final Map<SchemaSet, RegistrationManifest> manifests;
+
+    Target(final RegistrationEngine engine, final Repository client, final RetryingInvoker invoker,
+        final RegistrationMetrics metrics, final Map<SchemaSet, RegistrationManifest> manifests) {
+      this.engine = engine;
+      this.client = client;
+      this.invoker = invoker;
+      this.metrics = metrics;
+      this.manifests = manifests;
+    }
+  }
+
+  private final Log log;
+  /** Reported as the source of registration failures. */
+  private final Object source;
+  private final String serverURL;
+  private final int threads;
+
+  boolean skipEquivalent = true;
+  boolean minify;
+  /** Null disables the pre-flight validation. */
+  SchemaValidator.Compatibility validation;
+  /** Whether to register schemas after those defining the types they reference, see {@link SchemaGraph}. */
+  boolean orderByReferences;
+  /** Number of subjects looked up one by one before listing them all instead, see {@link SubjectCache}. */
+  int subjectLookupThreshold = Integer.parseInt(AbstractSchemaRepoMojo.DEFAULT_SUBJECT_LOOKUP_THRESHOLD);
+  /** Null disables the report. */
+  File reportFile;
+
+  RegistrationEngine(final Log log, final Object source, final String serverURL, final int threads) {
+    this.log = log;
+    this.source = source;
+    this.serverURL = serverURL;
+    this.threads = threads;
+  }
+
+  /**
+   * @return an engine with the same options, registering with another schema-repo
+   */
+  RegistrationEngine forTarget(final String targetURL, final Log targetLog, final File targetReportFile) {
+    final RegistrationEngine engine = new RegistrationEngine(targetLog, source, targetURL, threads);
+    engine.skipEquivalent = skipEquivalent;
+    engine.minify = minify;
+    engine.validation = validation;
+    engine.orderByReferences = orderByReferences;
+    engine.subjectLookupThreshold = subjectLookupThreshold;
+    engine.reportFile = targetReportFile;
+    return engine;
+  }
+
+  /**
+   * Registers the schema sets in a single session: one subject cache and one pool of workers.
+   * Schema sets are walked one after another, their registrations overlap. When ordering by references, all the schemas
+   * are read upfront instead, and registered level by level. Manifests are stored once done, unless the ordering or the
+   * validation failed; metrics are logged and reported, also when walking a schema set fails.
+   * @param index filled with the IDs of the Avro schemas registered or up to date, null if not enabled
+   * @throws MojoFailureException if any schema could not be registered, or the ordering or validation failed
+   */
+  void register(final List<SchemaSet> schemaSets, final Repository client, final RetryingInvoker invoker,
+      final RegistrationMetrics metrics, final SchemaIdIndex index) throws MojoExecutionException, MojoFailureException {
+    final SubjectCache subjects = new SubjectCache(client, log, invoker, subjectLookupThreshold);
+    final List<SchemaWalker> walkers = new ArrayList<>();
+    RegistrationWorkers workers = null;
+    // nothing to store if ordering or validation fails, the manifest stays as it was
+    boolean validated = validation == null && !orderByReferences;
+    try {
+      final Map<SchemaFile, RegistrationManifest> manifests = new LinkedHashMap<>();
+      List<List<SchemaFile>> levels = null;
+      if (orderByReferences) {
+        final Map<SchemaFile, SchemaSet> schemaFiles = collect(schemaSets, metrics);
+        for (Map.Entry<SchemaFile, SchemaSet> schemaFile : schemaFiles.entrySet()) {
+          manifests.put(schemaFile.getKey(), schemaFile.getValue().getManifest());
+        }
+        levels = order(schemaFiles.keySet(), metrics);
+        subjects.expect(changedSubjectNames(manifests));
+      }
+      if (validation != null) {
+        // schemas read upfront are validated as read, instead of walking the schema sets again
+        validateSchemas(schemaSets, levels != null ? manifests : null, subjects, invoker, metrics);
+      }
+      validated = true;
+      if (levels != null) {
+        registerLevels(levels, manifests, subjects, metrics, invoker, index);
+      } else {
+        workers = new RegistrationWorkers(threads);
+        for (SchemaSet schemaSet : schemaSets) {
+          walkers.add(submit(schemaSet, workers, subjects, metrics, invoker, index, null));
+        }
+        workers.awaitCompletion();
+      }
+    } catch (InterruptedException e) {
+      if (workers != null) {
+        workers.shutdownNow();
+      }
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while waiting for schema registration to complete", e);
+    } finally {
+      if (validated) {
+        for (SchemaSet schemaSet : schemaSets) {
+          storeManifest(schemaSet.getManifest());
+        }
+      }
+      metrics.finish();
+    }
+    for (int i = 0; i < walkers.size(); i++) {
+      if (walkers.get(i) != null && walkers.get(i).getError() != null) {
+        // the schemas found before the walk failed went through, they are still accounted for
+        metrics.log(log);
+        writeReport(metrics);
+        throw new MojoExecutionException(format("Failed to walk %s", schemaSets.get(i).getRoot()), walkers.get(i).getError());
+      }
+    }
+    report(metrics);
+  }
+
+  /**
+   * Registers the schema sets with several schema-repos concurrently. All the schemas are discovered and read once,
+   * upfront, and ordered by their references if needed; each target then runs its own session on its own thread:
+   * subject cache, workers, validation, manifests, metrics, summary and report.
+   * The first target is the primary one: the index is filled from it, and it has to succeed. Up to
+   * <pre>laggingTargets</pre> of the others may fail without failing the registration, they are reported as lagging
+   * behind instead, and catch up on the next run thanks to their manifests.
+   * @param index filled with the IDs of the Avro schemas registered with or up to date on the primary target, null if
+   * not enabled
+   * @throws MojoFailureException if the primary target or more than <pre>laggingTargets</pre> of the others failed, or
+   * the ordering failed
+   */
+  void register(final List<SchemaSet> schemaSets, final List<Target> targets, final int laggingTargets,
+      final SchemaIdIndex index) throws MojoExecutionException, MojoFailureException {
+    final RegistrationMetrics reading = new RegistrationMetrics();
+    final Map<SchemaFile, SchemaSet> schemaFiles;
+    final List<List<SchemaFile>> levels;
+    try {
+      schemaFiles = collect(schemaSets, reading);
+      levels = orderByReferences ? order(schemaFiles.keySet(), reading)
+          : Collections.<List<SchemaFile>>singletonList(new ArrayList<>(schemaFiles.keySet()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while reading schemas", e);
+    }
+    reading.finish();
+    log.info(format("Read %s schemas in %s ms, registering them with %s schema-repos", schemaFiles.size(),
+        reading.getWallMillis(), targets.size()));
+
+    final AtomicInteger threadCnt = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(targets.size(), new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "schema-repo-target-" + threadCnt.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final List<Future<Void>> results = new ArrayList<>();
+    for (int i = 0; i < targets.size(); i++) {
+      final Target target = targets.get(i);
+      final SchemaIdIndex targetIndex = i == 0 ? index : null;
+      results.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          target.engine.register(schemaFiles, levels, reading, target, targetIndex);
+          return null;
+        }
+      }));
+    }
+    final List<String> failed = new ArrayList<>();
+    final List<String> lagging = new ArrayList<>();
+    try {
+      for (int i = 0; i < targets.size(); i++) {
+        final String targetURL = targets.get(i).engine.serverURL;
+        try {
+          results.get(i).get();
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+          if (!(cause instanceof MojoFailureException)) {
+            log.error(format("Registration with schema-repo %s failed", targetURL), cause);
+          }
+          final String description = cause instanceof MojoFailureException
+              ? ((MojoFailureException) cause).getLongMessage() : String.valueOf(cause);
+          if (i > 0 && lagging.size() < laggingTargets) {
+            lagging.add(targetURL);
+            log.warn(format("Schema-repo %s is lagging behind: %s", targetURL, description));
+          } else {
+            failed.add(targetURL);
+            log.error(format("Registration with schema-repo %s failed: %s", targetURL, description));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while waiting for schema registration to complete", e);
+    } finally {
+      executor.shutdownNow();
+    }
+    log.info(format("Registered with %s of %s schema-repos%s", targets.size() - failed.size() - lagging.size(),
+        targets.size(), lagging.isEmpty() ? "" : format(", %s lagging behind: %s", lagging.size(), lagging)));
+
+    if (!failed.isEmpty()) {
+      throw new MojoFailureException(source, "Schema registration failed",
+          format("Registration failed with %s of %s schema-repos: %s, see above errors", failed.size(), targets.size(),
+              failed));
+    }
+  }
+
+  /**
+   * Registers schemas read upfront with this engine's schema-repo, as one of the targets of a fan-out.
+   * @throws MojoFailureException if any schema could not be registered, or the validation failed
+   */
+  private void register(final Map<SchemaFile, SchemaSet> schemaFiles, final List<List<SchemaFile>> levels,
+      final RegistrationMetrics reading, final Target target, final SchemaIdIndex index)
+      throws MojoExecutionException, MojoFailureException {
+    final RegistrationMetrics metrics = target.metrics;
+    metrics.found.set(reading.found.get());
+    // schemas which could not be read fail with every target
+    metrics.failed.set(reading.failed.get());
+    final Map<SchemaFile, RegistrationManifest> manifests = new LinkedHashMap<>();
+    for (Map.Entry<SchemaFile, SchemaSet> schemaFile : schemaFiles.entrySet()) {
+      manifests.put(schemaFile.getKey(), target.manifests.get(schemaFile.getValue()));
+    }
+    final SubjectCache subjects = new SubjectCache(target.client, log, target.invoker, subjectLookupThreshold);
+    subjects.expect(changedSubjectNames(manifests));
+    boolean validated = validation == null;
+    try {
+      if (validation != null) {
+        validateSchemas(null, manifests, subjects, target.invoker, metrics);
+      }
+      validated = true;
+      registerLevels(levels, manifests, subjects, metrics, target.invoker, index);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while waiting for schema registration to complete", e);
+    } finally {
+      if (validated) {
+        for (RegistrationManifest manifest : target.manifests.values()) {
+          storeManifest(manifest);
+        }
+      }
+      metrics.finish();
+    }
+    report(metrics);
+  }
+
+  /**
+   * Logs and reports the metrics of a session.
+   * @throws MojoFailureException if any schema could not be registered
+   */
+  private void report(final RegistrationMetrics metrics) throws MojoFailureException {
+    metrics.log(log);
+    writeReport(metrics);
+
+    if (metrics.failed.get() > 0) {
+      throw new MojoFailureException(source, "Schema registration failed",
+          format("%s schemas failed to get registered with the schema-repo, see above errors", metrics.failed.get()));
+    }
+  }
+
+  /**
+   * Runs the pre-flight validation of all the schema sets.
+   * @param read schemas already read, validated instead of walking the schema sets if not null
+   * @throws MojoFailureException if any problem was found
+   */
+  private void validateSchemas(final List<SchemaSet> schemaSets, final Map<SchemaFile, RegistrationManifest> read,
+      final SubjectCache subjects, final RetryingInvoker invoker, final RegistrationMetrics metrics)
+      throws MojoFailureException, InterruptedException {
+    final int parallelism = Math.max(Runtime.getRuntime().availableProcessors(), threads);
+    log.info(format("Validating schemas using %s threads, %s compatibility required", parallelism,
+        validation.name().toLowerCase(Locale.ROOT)));
+    final long start = RegistrationMetrics.start();
+    final SchemaValidator validator = new SchemaValidator(validation, subjects, invoker, parallelism);
+    final List<String> problems = read != null ? validator.validate(read) : validator.validate(schemaSets);
+    metrics.record(RegistrationMetrics.Phase.VALIDATION, start);
+    if (!problems.isEmpty()) {
+      for (String problem : problems) {
+        log.error(problem);
+      }
+      throw new MojoFailureException(source, "Schema validation failed",
+          format("%s problems found by the pre-flight validation, nothing was registered", problems.size()));
+    }
+  }
+
+  /**
+   * Reads all the schemas upfront.
+   * @return the schema set of every schema read, in discovery order
+   */
+  private Map<SchemaFile, SchemaSet> collect(final List<SchemaSet> schemaSets, final RegistrationMetrics metrics)
+      throws MojoExecutionException, InterruptedException {
+    final Map<SchemaFile, SchemaSet> collected = new LinkedHashMap<>();
+    for (SchemaSet schemaSet : schemaSets) {
+      final List<SchemaFile> schemaFiles = new ArrayList<>();
+      final SchemaWalker walker = submit(schemaSet, null, null, metrics, null, null, schemaFiles);
+      if (walker != null && walker.getError() != null) {
+        throw new MojoExecutionException(format("Failed to walk %s", schemaSet.getRoot()), walker.getError());
+      }
+      for (SchemaFile schemaFile : schemaFiles) {
+        collected.put(schemaFile, schemaSet);
+      }
+    }
+    return collected;
+  }
+
+  /**
+   * Groups the schemas into levels by their references, see {@link SchemaGraph}.
+   * @throws MojoFailureException if any problem was found
+   */
+  private List<List<SchemaFile>> order(final Collection<SchemaFile> schemaFiles, final RegistrationMetrics metrics)
+      throws MojoFailureException {
+    final long start = RegistrationMetrics.start();
+    final SchemaGraph graph = new SchemaGraph(new ArrayList<>(schemaFiles));
+    metrics.record(RegistrationMetrics.Phase.ORDERING, start);
+    if (!graph.getProblems().isEmpty()) {
+      for (String problem : graph.getProblems()) {
+        log.error(problem);
+      }
+      throw new MojoFailureException(source, "Schema ordering failed",
+          format("%s problems found in the references between schemas, nothing was registered", graph.getProblems().size()));
+    }
+    log.info(format("Registering %s schemas in %s levels of references", schemaFiles.size(), graph.getLevels().size()));
+    return graph.getLevels();
+  }
+
+  /**
+   * Registers the levels one after another, the schemas of a level in parallel. Once a level had failures, the schemas
+   * of the following ones are not registered, as they may reference the types which failed, and count as failed.
+   */
+  private void registerLevels(final List<List<SchemaFile>> levels, final Map<SchemaFile, RegistrationManifest> manifests,
+      final SubjectCache subjects, final RegistrationMetrics metrics, final RetryingInvoker invoker,
+      final SchemaIdIndex index) throws InterruptedException {
+    for (int i = 0; i < levels.size(); i++) {
+      final int failed = metrics.failed.get();
+      final RegistrationWorkers workers = new RegistrationWorkers(threads);
+      try {
+        for (SchemaFile schemaFile : levels.get(i)) {
+          submitIfChanged(schemaFile, manifests.get(schemaFile), workers, subjects, metrics, invoker, index);
+        }
+        workers.awaitCompletion();
+      } catch (InterruptedException e) {
+        workers.shutdownNow();
+        throw e;
+      }
+      if (metrics.failed.get() > failed && i + 1 < levels.size()) {
+        int abandoned = 0;
+        for (List<SchemaFile> level : levels.subList(i + 1, levels.size())) {
+          for (SchemaFile schemaFile : level) {
+            if (manifests.get(schemaFile).isUpToDate(schemaFile.getKey(), schemaFile.getSubjectName(), schemaFile.getHash())) {
+              metrics.skipped.incrementAndGet();
+            } else {
+              abandoned++;
+            }
+          }
+        }
+        metrics.failed.addAndGet(abandoned);
+        log.error(format("Not registering the %s changed schemas of the %s levels after level %s, which had failures",
+            abandoned, levels.size() - i - 1, i));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Walks the schema set, reading the schema files on this thread, overlapping with the discovery and with in-flight
+   * registrations, and hands those which changed since the last run over to the workers.
+   * @param collected if not null, gets all the schemas read instead, for them to be registered later on
+   * @return the walker, to be checked for errors once the registration is over, null for bundles
+   */
+  private SchemaWalker submit(final SchemaSet schemaSet, final RegistrationWorkers workers, final SubjectCache subjects,
+      final RegistrationMetrics metrics, final RetryingInvoker invoker, final SchemaIdIndex index,
+      final List<SchemaFile> collected) throws InterruptedException {
+    if (schemaSet.getBundle() != null) {
+      submitBundle(schemaSet, workers, subjects, metrics, invoker, index, collected);
+      return null;
+    }
+    final RegistrationManifest manifest = schemaSet.getManifest();
+    final SchemaWalker walker = SchemaWalker.read(schemaSet, metrics, new SchemaWalker.Consumer<RuntimeException>() {
+      @Override
+      public void accept(final SchemaFile schemaFile) {
+        if (collected != null) {
+          collected.add(schemaFile);
+        } else {
+          submitIfChanged(schemaFile, manifest, workers, subjects, metrics, invoker, index);
+        }
+      }
+
+      @Override
+      public void failed(final Path path, final Exception e) {
+        metrics.failed.incrementAndGet();
+        log.error(format("Failed to register %s, could not read it or determine subject name", path), e);
+      }
+    });
+    return walker;
+  }
+
+  /**
+   * Hands the bundle's schemas which changed since the last run over to the workers, inflating them on this thread.
+   * Up to date schemas are recognized from the bundle's index, and only inflated if their ID is to be indexed.
+   * @param collected if not null, gets all the schemas of the bundle instead, for them to be registered later on
+   */
+  private void submitBundle(final SchemaSet schemaSet, final RegistrationWorkers workers, final SubjectCache subjects,
+      final RegistrationMetrics metrics, final RetryingInvoker invoker, final SchemaIdIndex index,
+      final List<SchemaFile> collected) {
+    final SchemaBundle bundle = schemaSet.getBundle();
+    final RegistrationManifest manifest = schemaSet.getManifest();
+    for (SchemaBundle.Entry entry : bundle.getEntries()) {
+      metrics.found.incrementAndGet();
+      final boolean upToDate = collected == null
+          && manifest.isUpToDate(entry.getKey(), entry.getSubjectName(), entry.getHash());
+      if (upToDate) {
+        metrics.skipped.incrementAndGet();
+        log.debug(format("%s is unchanged since it was registered under subject %s, skipping",
+            entry.getKey(), entry.getSubjectName()));
+        if (index == null || !AvroSchemas.isAvroSchemaFile(entry.getKey())) {
+          continue;
+        }
+      }
+      final SchemaFile schemaFile;
+      try {
+        final long readStart = RegistrationMetrics.start();
+        schemaFile = bundle.read(entry);
+        metrics.record(RegistrationMetrics.Phase.READ, readStart);
+      } catch (IOException e) {
+        if (upToDate) {
+          log.warn(format("Failed to index %s, could not read it from %s", entry.getKey(), bundle.getFile()), e);
+          continue;
+        }
+        metrics.failed.incrementAndGet();
+        log.error(format("Failed to register %s, could not read it from %s", entry.getKey(), bundle.getFile()), e);
+        continue;
+      }
+      if (upToDate) {
+        index.add(schemaFile, manifest.getSchemaId(schemaFile.getKey()));
+      } else if (collected != null) {
+        collected.add(schemaFile);
+      } else {
+        submit(schemaFile, manifest, workers, subjects, metrics, invoker, index);
+      }
+    }
+  }
+
+  /**
+   * Hands the schema over to the workers, unless it did not change since the last run.
+   */
+  private void submitIfChanged(final SchemaFile schemaFile, final RegistrationManifest manifest,
+      final RegistrationWorkers workers, final SubjectCache subjects, final RegistrationMetrics metrics,
+      final RetryingInvoker invoker, final SchemaIdIndex index) {
+    if (manifest.isUpToDate(schemaFile.getKey(), schemaFile.getSubjectName(), schemaFile.getHash())) {
+      metrics.skipped.incrementAndGet();
+      log.debug(format("%s is unchanged since it was registered under subject %s, skipping",
+          schemaFile, schemaFile.getSubjectName()));
+      if (index != null) {
+        index.add(schemaFile, manifest.getSchemaId(schemaFile.getKey()));
+      }
+      return;
+    }
+    submit(schemaFile, manifest, workers, subjects, metrics, invoker, index);
+  }
+
+  /**
+   * Hands a single schema over to the workers, failures are counted and logged.
+   */
+  void submit(final SchemaFile schemaFile, final RegistrationManifest manifest, final RegistrationWorkers workers,
+      final SubjectCache subjects, final RegistrationMetrics metrics, final RetryingInvoker invoker,
+      final SchemaIdIndex index) {
+    // when streaming, switches to the subject listing as soon as there are too many subjects to look up one by one
+    subjects.expect(schemaFile.getSubjectName());
+    workers.submit(schemaFile.getSubjectName(), new Runnable() {
+      @Override
+      public void run() {
+        try {
+          registerSchema(subjects, manifest, metrics, invoker, index, schemaFile);
+        } catch (Exception e) {
+          metrics.failed.incrementAndGet();
+          log.error(format("Failed to register %s under subject %s", schemaFile, schemaFile.getSubjectName()), e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Registers single schema, creating the subject first if needed.
+   * Avro schemas which are equivalent to the subject's latest version are not registered again, the latest version
+   * being only looked up for subjects which already existed.
+   * The IDs of Avro schemas are recorded in the index, if any.
+   * Invoked by the registration workers, which guarantee that calls for the same subject are never concurrent.
+   */
+  private void registerSchema(final SubjectCache subjects, final RegistrationManifest manifest,
+      final RegistrationMetrics metrics, final RetryingInvoker invoker, final SchemaIdIndex index,
+      final SchemaFile schemaFile) throws Exception {
+    final String subjectName = schemaFile.getSubjectName();
+    final Subject existing = subjects.get(subjectName);
+    if (existing != null) {
+      log.debug(format("subject %s is already registered", subjectName));
+    }
+    final Subject subject = existing != null ? existing : subjects.create(subjectName);
+    final Schema avroSchema = AvroSchemas.isAvroSchemaFile(schemaFile.getKey()) && (skipEquivalent || minify || index != null)
+        ? AvroSchemas.parse(schemaFile) : null;
+    // a subject created by this run has no latest version to compare with
+    if (avroSchema != null && skipEquivalent && existing != null) {
+      final SchemaEntry latest = invoker.invoke(RegistrationMetrics.Phase.LATEST_LOOKUP, new Callable<SchemaEntry>() {
+        @Override
+        public SchemaEntry call() {
+          return subject.latest();
+        }
+      });
+      final Schema latestSchema = latest != null ? AvroSchemas.parse(latest.getSchema(), schemaFile.getTypes()) : null;
+      if (latestSchema != null && AvroSchemas.fingerprint(latestSchema) == AvroSchemas.fingerprint(avroSchema)) {
+        metrics.equivalent.incrementAndGet();
+        manifest.registered(schemaFile.getKey(), subjectName, schemaFile.getHash(), latest.getId());
+        if (index != null) {
+          index.add(subjectName, AvroSchemas.fingerprint(avroSchema), latest.getId());
+        }
+        log.debug(format("%s is equivalent to the latest version of subject %s (ID %s), skipping",
+            schemaFile, subjectName, latest.getId()));
+        return;
+      }
+    }
+    final String payload = avroSchema != null && minify ? avroSchema.toString() : schemaFile.getSchema();
+    SchemaEntry schemaEntry = invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, new Callable<SchemaEntry>() {
+      @Override
+      public SchemaEntry call() throws Exception {
+        return subject.register(payload);
+      }
+    });
+    metrics.registered.incrementAndGet();
+    manifest.registered(schemaFile.getKey(), subjectName, schemaFile.getHash(), schemaEntry.getId());
+    if (index != null && avroSchema != null) {
+      index.add(subjectName, AvroSchemas.fingerprint(avroSchema), schemaEntry.getId());
+    }
+    log.debug(format("Registered %s under subject %s with ID %s", schemaFile, subjectName, schemaEntry.getId()));
+  }
+
+  /**
+   * @return the subjects of the schemas which changed since the last run, those about to be looked up
+   */
+  private static List<String> changedSubjectNames(final Map<SchemaFile, RegistrationManifest> manifests) {
+    final List<String> subjectNames = new ArrayList<>();
+    for (Map.Entry<SchemaFile, RegistrationManifest> schemaFile : manifests.entrySet()) {
+      final SchemaFile file = schemaFile.getKey();
+      if (!schemaFile.getValue().isUpToDate(file.getKey(), file.getSubjectName(), file.getHash())) {
+        subjectNames.add(file.getSubjectName());
+      }
+    }
+    return subjectNames;
+  }
+
+  private void storeManifest(final RegistrationManifest manifest) {
+    try {
+      manifest.store();
+    } catch (IOException e) {
+      // not fatal, the next run will just have more work to do
+      log.warn(format("Failed to write registration manifest %s", manifest.getFile()), e);
+    }
+  }
+
+  private void writeReport(final RegistrationMetrics metrics) {
+    if (reportFile == null) {
+      return;
+    }
+    try {
+      metrics.writeReport(reportFile, serverURL, threads);
+      log.info(format("Wrote registration report to %s", reportFile));
+    } catch (IOException e) {
+      log.warn(format("Failed to write registration report %s", reportFile), e);
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Record of the schemas successfully registered by the previous runs, used to skip schemas which did not change since.
+ * Stored as a tab-separated text file, one line per schema file: path relative to the schema directory,
+ * subject name, SHA-256 hash of the file's content and the ID of the registered schema entry.
+ * The manifest is bound to the schema-repo it was produced against and is ignored when used with another one.
+ * <p>Only successful registrations make it into the new manifest, so after a failed run just the schemas
+ * which did not get registered will be retried.</p>
+ */
+class RegistrationManifest {
+
+  private static final String HEADER = "# schema-repo-tools registration manifest, generated file";
+  private static final String SERVER_KEY = "server";
+  private static final String SEPARATOR = "\t";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  static final class Entry {
+    final String subjectName;
+    final String hash;
+    final String schemaId;
+
+    Entry(final String subjectName, final String hash, final String schemaId) {
+      this.subjectName = subjectName;
+      this.hash = hash;
+      this.schemaId = schemaId;
+    }
+  }
+
+  private final File file;
+  private final String serverURL;
+  private final Map<String, Entry> previous;
+  private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<>();
+
+  private RegistrationManifest(final File file, final String serverURL, final Map<String, Entry> previous) {
+    this.file = file;
+    this.serverURL = serverURL;
+    this.previous = previous;
+  }
+
+  /**
+   * Reads the manifest left by the previous run.
+   * @param file manifest location, if null nothing will be loaded or stored
+   * @param serverURL schema-repo the schemas are about to be registered with
+   * @param ignorePrevious whether to disregard the existing manifest content (i.e. register everything)
+   */
+  static RegistrationManifest load(final File file, final String serverURL, final boolean ignorePrevious)
+      throws IOException {
+    final Map<String, Entry> previous = new HashMap<>();
+    if (file != null && file.isFile() && !ignorePrevious) {
+      boolean sameServer = false;
+      try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+          }
+          final String[] fields = line.split(SEPARATOR, -1);
+          if (fields.length == 2 && SERVER_KEY.equals(fields[0])) {
+            sameServer = serverURL.equals(fields[1]);
+          } else if (fields.length == 4) {
+            previous.put(fields[0], new Entry(fields[1], fields[2], fields[3]));
+          }
+        }
+      }
+      if (!sameServer) {
+        previous.clear();
+      }
+    }
+    return new RegistrationManifest(file, serverURL, previous);
+  }
+
+  /**
+   * @return a manifest which is neither loaded nor stored, only recording the registrations of this run
+   */
+  static RegistrationManifest inMemory(final String serverURL) {
+    return new RegistrationManifest(null, serverURL, new HashMap<String, Entry>());
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  int previousSize() {
+    return previous.size();
+  }
+
+  /**
+   * Checks whether the schema was already registered under the same subject with the same content.
+   * Up to date schemas are carried over to the new manifest.
+   */
+  boolean isUpToDate(final String key, final String subjectName, final String hash) {
+    final Entry entry = previous.get(key);
+    if (entry != null && entry.subjectName.equals(subjectName) && entry.hash.equals(hash)) {
+      current.put(key, entry);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether the schema was registered, or found up to date, under the same subject with the same content
+   * during this run.
+   */
+  boolean isCurrent(final String key, final String subjectName, final String hash) {
+    final Entry entry = current.get(key);
+    return entry != null && entry.subjectName.equals(subjectName) && entry.hash.equals(hash);
+  }
+
+  /**
+   * @return ID of the schema registered, or found up to date, during this run, null if none
+   */
+  String getSchemaId(final String key) {
+    final Entry entry = current.get(key);
+    return entry != null ? entry.schemaId : null;
+  }
+
+  void registered(final String key, final String subjectName, final String hash, final String schemaId) {
+    current.put(key, new Entry(subjectName, hash, schemaId));
+  }
+
+  /**
+   * Writes out the entries of schemas registered (or found up to date) during this run, replacing the previous content.
+   */
+  void store() throws IOException {
+    if (file == null) {
+      return;
+    }
+    final Path target = file.toPath();
+    Files.createDirectories(target.toAbsolutePath().getParent());
+    final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      writer.write(SERVER_KEY + SEPARATOR + serverURL);
+      writer.newLine();
+      for (Map.Entry<String, Entry> mapEntry : new TreeMap<>(current).entrySet()) {
+        final Entry entry = mapEntry.getValue();
+        if (!isStorable(mapEntry.getKey()) || !isStorable(entry.subjectName) || !isStorable(entry.schemaId)) {
+          // can't be represented, the schema will simply be registered again next time
+          continue;
+        }
+        writer.write(mapEntry.getKey() + SEPARATOR + entry.subjectName + SEPARATOR + entry.hash + SEPARATOR + entry.schemaId);
+        writer.newLine();
+      }
+    }
+    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static boolean isStorable(final String value) {
+    return value != null && value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0;
+  }
+
+  /**
+   * @return hex-encoded SHA-256 digest of the content
+   */
+  static String hash(final byte[] content) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+    }
+    final byte[] bytes = digest.digest(content);
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+}
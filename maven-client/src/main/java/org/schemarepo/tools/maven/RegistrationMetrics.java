@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Timings and counters of a registration run.
+ * Every phase keeps a latency histogram (microsecond resolution) of its individual operations,
+ * along with their cumulative duration. Phases of the pipeline overlap, so the cumulative durations
+ * may add up to more than the wall time.
+ * Safe for concurrent use.
+ */
+class RegistrationMetrics {
+
+  enum Phase {
+    /** Walk of a schema directory, recorded once per module. */
+    DISCOVERY("discovery", false),
+    /** Pre-flight validation of all the schemas, recorded once. */
+    VALIDATION("validation", false),
+    /** Ordering of all the schemas by their references, recorded once. */
+    ORDERING("ordering", false),
+    /** Download of the schema-repo's subject listing. */
+    LISTING("listing", true),
+    /** Lookup of a single subject, instead of the listing. */
+    SUBJECT_LOOKUP("subjectLookup", true),
+    /** Reading (and hashing) of a single schema file. */
+    READ("read", false),
+    /** Creation of a subject which did not exist yet. */
+    SUBJECT_CREATION("subjectCreation", false),
+    /** Lookup of a subject's latest schema, to compare an Avro schema with. */
+    LATEST_LOOKUP("latestLookup", true),
+    /** Lookup of a specific version of a subject. */
+    VERSION_LOOKUP("versionLookup", true),
+    /** Registration of a single schema. */
+    REGISTRATION("registration", false);
+
+    private final String key;
+    private final boolean readOnly;
+
+    Phase(final String key, final boolean readOnly) {
+      this.key = key;
+      this.readOnly = readOnly;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    /**
+     * @return whether the phase's calls only read from the schema-repo, so that sending one twice is harmless
+     */
+    boolean isReadOnly() {
+      return readOnly;
+    }
+  }
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_KEYS = {"p50", "p90", "p99", "p999"};
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final long startNanos = System.nanoTime();
+  private final long startMillis = System.currentTimeMillis();
+  private volatile long wallNanos = -1;
+  private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+  private final Map<Phase, AtomicLong> totalNanos = new EnumMap<>(Phase.class);
+
+  final AtomicInteger found = new AtomicInteger();
+  final AtomicInteger registered = new AtomicInteger();
+  final AtomicInteger skipped = new AtomicInteger();
+  final AtomicInteger equivalent = new AtomicInteger();
+  final AtomicInteger failed = new AtomicInteger();
+  final AtomicInteger retries = new AtomicInteger();
+  final AtomicInteger hedges = new AtomicInteger();
+  final AtomicInteger hedgeWins = new AtomicInteger();
+  final RequestStats requests = new RequestStats();
+  final ConcurrencyStats concurrency = new ConcurrencyStats();
+
+  RegistrationMetrics() {
+    for (Phase phase : Phase.values()) {
+      histograms.put(phase, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+      totalNanos.put(phase, new AtomicLong());
+    }
+  }
+
+  /**
+   * @return start timestamp to be passed to {@link #record(Phase, long)}
+   */
+  static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records an operation of the given phase, which started at <pre>startNanos</pre> and just finished.
+   */
+  void record(final Phase phase, final long startNanos) {
+    record(phase, startNanos, System.nanoTime());
+  }
+
+  /**
+   * Records an operation of the given phase, which took place between the two timestamps.
+   */
+  void record(final Phase phase, final long startNanos, final long endNanos) {
+    final long elapsed = endNanos - startNanos;
+    histograms.get(phase).recordValue(TimeUnit.NANOSECONDS.toMicros(elapsed));
+    totalNanos.get(phase).addAndGet(elapsed);
+  }
+
+  /**
+   * Marks the end of the run.
+   */
+  void finish() {
+    wallNanos = System.nanoTime() - startNanos;
+  }
+
+  long getWallMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(wallNanos >= 0 ? wallNanos : System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return latency histogram of the phase, values in microseconds
+   */
+  Histogram getHistogram(final Phase phase) {
+    return histograms.get(phase);
+  }
+
+  /**
+   * Logs a per-phase summary.
+   */
+  void log(final Log log) {
+    log.info(format("Registration took %s ms: %s schemas found, %s registered, %s skipped, %s equivalent to the latest "
+        + "version, %s failed", getWallMillis(), found.get(), registered.get(), skipped.get(), equivalent.get(), failed.get()));
+    for (Phase phase : Phase.values()) {
+      final Histogram histogram = histograms.get(phase);
+      if (histogram.getTotalCount() == 0) {
+        continue;
+      }
+      log.info(format("  %-16s count=%s total=%sms p50=%.2fms p99=%.2fms max=%.2fms", phase.getKey(),
+          histogram.getTotalCount(), TimeUnit.NANOSECONDS.toMillis(totalNanos.get(phase).get()),
+          millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+          millis(histogram.getMaxValue())));
+    }
+    log.info("  schema-repo      " + requests);
+    if (retries.get() > 0 || hedges.get() > 0) {
+      log.info(format("  resilience       %s retries, %s hedged requests (%s won)", retries.get(), hedges.get(), hedgeWins.get()));
+    }
+    if (concurrency.isEnabled()) {
+      log.info("  concurrency      " + concurrency);
+    }
+  }
+
+  /**
+   * Writes a JSON report, meant to be tracked by CI across builds.
+   * Latencies are in milliseconds.
+   */
+  void writeReport(final File file, final String serverURL, final int threads) throws IOException {
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      json.beginObject()
+          .name("serverURL").value(serverURL)
+          .name("startTime").value(startMillis)
+          .name("threads").value(threads)
+          .name("wallTimeMillis").value(getWallMillis());
+      json.name("schemas").beginObject()
+          .name("found").value(found.get())
+          .name("registered").value(registered.get())
+          .name("skipped").value(skipped.get())
+          .name("equivalent").value(equivalent.get())
+          .name("failed").value(failed.get())
+          .endObject();
+      json.name("transport");
+      requests.writeTo(json);
+      json.name("resilience").beginObject()
+          .name("retries").value(retries.get())
+          .name("hedges").value(hedges.get())
+          .name("hedgeWins").value(hedgeWins.get())
+          .endObject();
+      if (concurrency.isEnabled()) {
+        json.name("concurrency");
+        concurrency.writeTo(json);
+      }
+      json.name("phases").beginObject();
+      for (Phase phase : Phase.values()) {
+        final Histogram histogram = histograms.get(phase);
+        json.name(phase.getKey()).beginObject()
+            .name("count").value(histogram.getTotalCount())
+            .name("totalMillis").value(TimeUnit.NANOSECONDS.toMillis(totalNanos.get(phase).get()));
+        writeLatencies(json, histogram);
+        json.endObject();
+      }
+      json.endObject();
+      json.endObject();
+    }
+  }
+
+  /**
+   * Writes the min, mean, percentiles and max of the histogram (in microseconds) as milliseconds, if it is not empty.
+   */
+  static void writeLatencies(final JsonWriter json, final Histogram histogram) throws IOException {
+    if (histogram.getTotalCount() > 0) {
+      json.name("min").value(millis(histogram.getMinValue()))
+          .name("mean").value(histogram.getMean() / 1000d);
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        json.name(PERCENTILE_KEYS[i]).value(millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+      }
+      json.name("max").value(millis(histogram.getMaxValue()));
+    }
+  }
+
+  static double millis(final long micros) {
+    return micros / 1000d;
+  }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of registration workers.
+ * Each worker is a single thread with its own task queue, and all tasks for a given subject are routed
+ * to the same worker. Hence schemas of the same subject are registered one after another in submission order
+ * (and never race to create the subject), while independent subjects are registered in parallel.
+ * <p>Worker queues are bounded, {@link #submit(String, Runnable)} blocks while the target worker's queue is full.</p>
+ */
+class RegistrationWorkers {
+
+  static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  /**
+   * Makes the submitting thread wait for room in the worker's queue.
+   */
+  private static final RejectedExecutionHandler BLOCK_WHEN_FULL = new RejectedExecutionHandler() {
+    @Override
+    public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Registration workers have been shut down");
+      }
+      try {
+        executor.getQueue().put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted while waiting to submit registration task", e);
+      }
+    }
+  };
+
+  private final ExecutorService[] workers;
+
+  RegistrationWorkers(final int threads) {
+    this(threads, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  RegistrationWorkers(final int threads, final int queueCapacity) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of registration threads must be a positive integer");
+    }
+    workers = new ExecutorService[threads];
+    final AtomicInteger threadCnt = new AtomicInteger();
+    final ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "schema-repo-registration-" + threadCnt.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory, BLOCK_WHEN_FULL);
+    }
+  }
+
+  /**
+   * Schedules the task on the worker owning the given subject, waiting for room in its queue if needed.
+   */
+  void submit(final String subjectName, final Runnable task) {
+    workers[(subjectName.hashCode() & Integer.MAX_VALUE) % workers.length].execute(task);
+  }
+
+  /**
+   * Stops accepting new tasks and waits until all the submitted ones are done.
+   */
+  void awaitCompletion() throws InterruptedException {
+    for (ExecutorService worker : workers) {
+      worker.shutdown();
+    }
+    for (ExecutorService worker : workers) {
+      while (!worker.awaitTermination(1, TimeUnit.MINUTES)) {
+        // keep waiting, registration of a large schema set may take a while
+      }
+    }
+  }
+
+  /**
+   * Abandons the pending tasks, used when the submitting thread gets interrupted.
+   */
+  void shutdownNow() {
+    for (ExecutorService worker : workers) {
+      worker.shutdownNow();
+    }
+  }
+
+}
@@ -23,152 +23,420 @@ import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFI
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.schemarepo.SchemaEntry;
-import org.schemarepo.Subject;
-import org.schemarepo.client.RESTRepositoryClient;
-import org.schemarepo.config.Config;
-import org.schemarepo.json.GsonJsonUtil;
+import org.schemarepo.Repository;
 
 /**
  * Implements register goal of schema-repo plugin.
  * Will recursively scan the schema directory (<pre>schemaDir</pre>) for <pre>schemeFileExt</pre>
  * files (defaults to <pre>.avsc</pre>) and attempts to register them
  * with the schema-repo identified by <pre>url</pre>.
- * Files starting with dot ('.') will be ignored.
+ * Files and directories starting with dot ('.') will be ignored. Files can be further selected by include and exclude
+ * globs (<pre>schemaIncludes</pre>, <pre>schemaExcludes</pre>), excluded directories not being walked at all, and
+ * the directory can be walked by several threads (<pre>discoveryThreads</pre>), see {@link SchemaFilter}.
  * <p>If the corresponding subject does not exist (e.g. first version of the given schema),
  * the subject will be created.</p>
  * <p>Subject name is derived from schema file name using Strategy pattern, with specific strategy
  * class specified in the user's POM. Default strategy uses file name without extension as subject name.</p>
+ * <p>Registration can be spread over several threads (<pre>threads</pre>, defaults to <pre>1</pre>):
+ * independent subjects are registered in parallel, while schemas sharing a subject are still registered
+ * one by one, in the order they were found.</p>
+ * <p>Successful registrations are recorded in a manifest (<pre>manifestFile</pre>) in the build directory,
+ * and schemas whose content and subject did not change since are skipped by the subsequent runs,
+ * unless <pre>force</pre> is set.</p>
+ * <p>Avro schemas (<pre>.avsc</pre> files) are compared with the latest version of their subject by the fingerprint of
+ * their parsing canonical form, and not registered again if they only differ by formatting, attribute order or
+ * documentation (<pre>skipEquivalent</pre>, defaults to <pre>true</pre>). They can also be uploaded in their compact
+ * form, without whitespace (<pre>minify</pre>, defaults to <pre>false</pre>).</p>
+ * <p>Discovery, reading and registration run as a pipeline connected by bounded queues: the directory walk,
+ * file reads (decoded using <pre>encoding</pre>, defaults to the project's source encoding or UTF-8)
+ * and the network calls overlap, and memory use does not grow with the number of schema files.</p>
+ * <p>Each phase of the run is timed, a summary is logged at the end and a JSON report with latency percentiles
+ * is written to <pre>reportFile</pre>.</p>
+ * <p>Failed calls to the schema-repo are retried (<pre>retries</pre>) with jittered exponential backoff, and slow ones
+ * can be hedged by a duplicate request (<pre>hedgePercentile</pre>), see {@link RetryingInvoker}.</p>
+ * <p>In multi-module builds, modules can defer their registration to the end of the build (<pre>registerAtEnd</pre>),
+ * much like deploy-at-end: once the last module executes the goal, the schemas of all the deferring modules are
+ * registered in a single session, looking the subjects up once and writing a single report, using the connection,
+ * threading and retry settings of the last module which deferred its own. Every module records its execution as it
+ * runs; the modules waited for are those with an execution of the goal (or of <pre>import-schemas</pre>) in their
+ * POM, or all of them if no module binds either goal (invoked from the command line). Nothing is registered if the
+ * build fails before then, and in sequential builds the last of them fails the build if others did not execute the
+ * goal.</p>
+ * <p>Optionally (<pre>validate</pre>), all the schemas are validated before anything is registered, so that an invalid
+ * schema does not leave the schema-repo half updated, see {@link SchemaValidator}.</p>
+ * <p>Optionally (<pre>orderByReferences</pre>), Avro schemas are registered after the schemas defining the named
+ * types they reference, level by level, see {@link SchemaGraph}. Reference problems are reported before anything is
+ * registered. All the schemas are then read before the first registration, rather than pipelined.</p>
+ * <p>Optionally (<pre>mirrorURLs</pre>), the schemas are registered with further schema-repos along with the primary
+ * one: they are discovered and read once, then registered with every schema-repo concurrently, each with its own
+ * manifest and report (named after it), metrics and summary. Up to <pre>laggingMirrors</pre> mirrors may fail without
+ * failing the build, they catch up on the next run.</p>
+ * <p>Optionally (<pre>idIndex</pre>), the IDs of the Avro schemas registered or found up to date are written to an
+ * index once everything got registered, see {@link SchemaIdIndex}.</p>
  */
-@Mojo( name = "register-schemas", defaultPhase = LifecyclePhase.DEPLOY)
-public class RepoClientMojo extends AbstractMojo {
+@Mojo( name = RepoClientMojo.GOAL, defaultPhase = LifecyclePhase.DEPLOY, threadSafe = true)
+public class RepoClientMojo extends AbstractSchemaRepoMojo {
 
-  static final String DEFAULT_SCHEMA_FILE_EXT = ".avsc";
-  static final String DEFAULT_SUBJECT_NAME_STRATEGY_CLASS = "org.schemarepo.tools.maven.DefaultSubjectNameStrategy";
+  static final String PLUGIN_KEY = "org.schemarepo:schema-repo-maven-plugin";
+  static final String GOAL = "register-schemas";
 
-  @Parameter(required = true, readonly = true, defaultValue = "${project}")
-  MavenProject project;
+  /**
+   * Registrations at end waiting for their last module, by Maven session: plugin classes are shared by all the modules
+   * of a build, including parallel ones, and possibly by further builds run in the same JVM.
+   */
+  private static final Map<MavenSession, PendingRegistration> PENDING_REGISTRATIONS = new WeakHashMap<>();
 
-  @Parameter(required = true, property = REPO_CLIENT_PROPERTY_PREFIX + "schemaDir")
-  File schemaDir;
+  @Parameter(readonly = true, defaultValue = "${session}")
+  MavenSession session;
 
-  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "schemaFileExt", defaultValue = DEFAULT_SCHEMA_FILE_EXT)
-  String schemaFileExt;
+  @Parameter(readonly = true, defaultValue = "${reactorProjects}")
+  List<MavenProject> reactorProjects;
 
-  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "subjectNameStrategyClass", defaultValue = DEFAULT_SUBJECT_NAME_STRATEGY_CLASS)
-  String subjectNameStrategyClass;
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "manifestFile",
+      defaultValue = "${project.build.directory}/schema-repo/registration.manifest")
+  File manifestFile;
 
-  @Parameter(required = true, property = Config.CLIENT_SERVER_URL)
-  String serverURL;
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "force", defaultValue = "false")
+  boolean force;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "registerAtEnd", defaultValue = "false")
+  boolean registerAtEnd;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "minify", defaultValue = "false")
+  boolean minify;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "validate", defaultValue = "false")
+  boolean validate;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "orderByReferences", defaultValue = "false")
+  boolean orderByReferences;
+
+  /** Additional schema-repos to register with, alongside the primary one (<pre>serverURL</pre>). */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "mirrorURLs")
+  List<String> mirrorURLs;
+
+  /** Number of mirrors allowed to fail, lagging behind the others, without failing the build. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "laggingMirrors", defaultValue = "0")
+  int laggingMirrors;
+
+  /** Connect timeout of the mirrors' connections in milliseconds, zero stands for the primary's. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "mirrorConnectTimeout", defaultValue = "0")
+  int mirrorConnectTimeout;
+
+  /** Read timeout of the mirrors' connections in milliseconds, zero stands for the primary's. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "mirrorReadTimeout", defaultValue = "0")
+  int mirrorReadTimeout;
+
+  /** One of none, backward, forward or full, only checked when validating. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "compatibility", defaultValue = "none")
+  String compatibility;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "reportFile",
+      defaultValue = "${project.build.directory}/schema-repo/registration-report.json")
+  File reportFile;
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
+    verifyServerURL();
+    verifyThreads();
+    final SchemaSet schemaSet = createSchemaSet();
+    if (!registerAtEnd) {
+      register(Collections.singletonList(schemaSet));
+    }
+    final PendingRegistration pending = executed(registerAtEnd ? schemaSet : null);
+    if (pending != null) {
+      getLog().info(format("Registering schemas of %s modules", pending.schemaSets.size()));
+      pending.registrar.register(pending.schemaSets);
+    } else if (registerAtEnd) {
+      getLog().info(format("Deferring registration of %s to the end of the build", schemaSet));
+    }
+  }
+
+  /**
+   * @return the project's schemas, discovered in the schema directory
+   */
+  SchemaSet createSchemaSet() throws MojoExecutionException {
     verifySchemaDir();
-    final SubjectNameStrategy subjectNameStrategy = createSubjectNameStrategy();
-    final List<Path> schemaPaths = collectSchemas();
-    final RESTRepositoryClient client = configureRepositoryClient();
+    return createSchemaSet(loadManifest());
+  }
 
-    final Map<String, Subject> subjectMap = new HashMap<>();
-    for (Subject subject : client.subjects()) {
-      subjectMap.put(subject.getName(), subject);
+  /**
+   * Registers the schema sets in a single session, see {@link RegistrationEngine}, then writes the ID index.
+   */
+  private void register(final List<SchemaSet> schemaSets) throws MojoExecutionException, MojoFailureException {
+    if (mirrorURLs != null && !mirrorURLs.isEmpty()) {
+      registerWithMirrors(schemaSets);
+      return;
+    }
+    final RegistrationEngine engine = createEngine();
+    final SchemaIdIndex index = createIdIndex();
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics);
+    final RetryingInvoker invoker = createInvoker(metrics);
+    try {
+      engine.register(schemaSets, client, invoker, metrics, index);
+    } finally {
+      invoker.close();
+      closeRepositoryClientFactory(clientFactory);
     }
-    getLog().info(format("Schema repo instance currently contains definitions for %s schemas", subjectMap.size()));
+    writeIdIndex(index);
+  }
 
-    int failuresCnt = 0;
-    for (Path schemaPath : schemaPaths) {
-      String subjectName = null;
-      try {
-        subjectName = subjectNameStrategy.getSubjectName(schemaPath);
-        Subject subject = subjectMap.get(subjectName);
-        if (subject == null) {
-          getLog().debug(format("Creating subject %s", subjectName));
-          subject = client.register(subjectName, null);
-          subjectMap.put(subjectName, subject);
-        } else {
-          getLog().debug(format("subject %s is already registered", subjectName));
-        }
-        SchemaEntry schemaEntry = subject.register(new String(Files.readAllBytes(schemaPath)));
-        getLog().debug(format("Registered %s under subject %s with ID %s", schemaPath, subjectName, schemaEntry.getId()));
-      } catch (Exception e) {
-        failuresCnt++;
-        getLog().error(format("Failed to register %s under subject %s", schemaPath, subjectName), e);
+  /**
+   * Registers the schema sets with the primary schema-repo and its mirrors concurrently, then writes the ID index, filled
+   * from the primary schema-repo.
+   */
+  private void registerWithMirrors(final List<SchemaSet> schemaSets) throws MojoExecutionException, MojoFailureException {
+    verifyMirrors();
+    final RegistrationEngine engine = createEngine();
+    final SchemaIdIndex index = createIdIndex();
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RepositoryClientFactory mirrorClientFactory = mirrorConnectTimeout > 0 || mirrorReadTimeout > 0
+        ? createRepositoryClientFactory(mirrorConnectTimeout > 0 ? mirrorConnectTimeout : httpConnectTimeout,
+            mirrorReadTimeout > 0 ? mirrorReadTimeout : httpReadTimeout)
+        : clientFactory;
+    final List<RegistrationEngine.Target> targets = new ArrayList<>();
+    try {
+      targets.add(createTarget(engine, clientFactory, serverURL, schemaSets));
+      for (String mirrorURL : mirrorURLs) {
+        targets.add(createTarget(engine, mirrorClientFactory, mirrorURL, schemaSets));
+      }
+      engine.register(schemaSets, targets, laggingMirrors, index);
+    } finally {
+      for (RegistrationEngine.Target target : targets) {
+        target.invoker.close();
+      }
+      closeRepositoryClientFactory(clientFactory);
+      if (mirrorClientFactory != clientFactory) {
+        closeRepositoryClientFactory(mirrorClientFactory);
       }
     }
+    writeIdIndex(index);
+  }
 
-    if (failuresCnt > 0) {
-      throw new MojoFailureException(this, "Schema registration failed",
-          format("%s schemas failed to get registered with the schema-repo, see above errors", failuresCnt));
+  private void verifyMirrors() throws MojoExecutionException {
+    final Set<String> targetURLs = new HashSet<>();
+    targetURLs.add(serverURL);
+    for (String mirrorURL : mirrorURLs) {
+      if (mirrorURL == null || mirrorURL.trim().isEmpty() || !targetURLs.add(mirrorURL)) {
+        throw new MojoExecutionException(format(
+            "Invalid <mirrorURLs> parameter value %s -- must be distinct and differ from <serverURL>", mirrorURLs));
+      }
+    }
+    if (laggingMirrors < 0 || laggingMirrors > mirrorURLs.size()) {
+      throw new MojoExecutionException(format(
+          "Invalid <laggingMirrors> parameter value %s -- must be between 0 and the number of mirrors", laggingMirrors));
+    }
+    if (mirrorConnectTimeout < 0 || mirrorReadTimeout < 0) {
+      throw new MojoExecutionException(format("Invalid <mirrorConnectTimeout>/<mirrorReadTimeout> parameter values %s/%s"
+          + " -- must not be negative", mirrorConnectTimeout, mirrorReadTimeout));
     }
   }
 
-  private void verifySchemaDir() throws MojoExecutionException {
-    if (!schemaDir.isAbsolute()) {
-      schemaDir = new File(project.getBasedir(), schemaDir.getPath());
+  /**
+   * @return the state of the registration with the schema-repo: its own connection, invoker, metrics, and for mirrors
+   * manifests and report named after it, logging with its URL as a prefix
+   */
+  private RegistrationEngine.Target createTarget(final RegistrationEngine engine,
+      final RepositoryClientFactory clientFactory, final String targetURL, final List<SchemaSet> schemaSets)
+      throws MojoExecutionException {
+    final boolean mirror = !targetURL.equals(serverURL);
+    final Map<SchemaSet, RegistrationManifest> manifests = new HashMap<>();
+    for (SchemaSet schemaSet : schemaSets) {
+      manifests.put(schemaSet, mirror ? loadMirrorManifest(schemaSet.getManifest(), targetURL) : schemaSet.getManifest());
     }
-    if (!schemaDir.isDirectory()) {
-      throw new MojoExecutionException(format("Invalid <schemaDir> parameter value %s -- not a directory", schemaDir.getAbsolutePath()));
-    }
-    schemaFileExt = schemaFileExt != null ? schemaFileExt : "";
-    getLog().info(format("Looking for %s files in %s", schemaFileExt.length() > 0 ? schemaFileExt : "all", schemaDir.getAbsolutePath()));
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics, targetURL);
+    final RetryingInvoker invoker = createInvoker(metrics);
+    final RegistrationEngine targetEngine = engine.forTarget(targetURL, new PrefixedLog(getLog(), "[" + targetURL + "] "),
+        mirror && reportFile != null ? mirrorFile(reportFile, targetURL) : reportFile);
+    return new RegistrationEngine.Target(targetEngine, client, invoker, metrics, manifests);
   }
 
-  private SubjectNameStrategy createSubjectNameStrategy() throws MojoExecutionException {
-    SubjectNameStrategy subjectNameStrategy;
-    String step = null;
+  private RegistrationManifest loadMirrorManifest(final RegistrationManifest manifest, final String mirrorURL)
+      throws MojoExecutionException {
+    if (manifest.getFile() == null) {
+      return RegistrationManifest.inMemory(mirrorURL);
+    }
+    final File file = mirrorFile(manifest.getFile(), mirrorURL);
     try {
-      step = "resolve/instantiate";
-      subjectNameStrategy = getClass().getClassLoader().loadClass(subjectNameStrategyClass).asSubclass(SubjectNameStrategy.class).newInstance();
-      step = "configure";
-      subjectNameStrategy.configure(project.getProperties());
-    } catch (Exception e) {
-      throw new MojoExecutionException(format(
-          "Invalid <subjectNameStrategyClass> parameter value %s -- failed to %s strategy", subjectNameStrategyClass, step));
+      final RegistrationManifest mirrorManifest = RegistrationManifest.load(file, mirrorURL, force);
+      if (mirrorManifest.previousSize() > 0) {
+        getLog().info(format("Loaded %s schemas previously registered with %s from %s", mirrorManifest.previousSize(),
+            mirrorURL, file));
+      }
+      return mirrorManifest;
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to read registration manifest %s", file), e);
     }
-    getLog().info("Using " + subjectNameStrategy);
-    return subjectNameStrategy;
   }
 
-  private RESTRepositoryClient configureRepositoryClient() {
-    final RESTRepositoryClient client = new RESTRepositoryClient(serverURL, new GsonJsonUtil(), false);
-    getLog().info(format("Connecting to schema-repo at %s", serverURL));
-    return client;
+  /**
+   * @return the mirror's own version of the file, the escaped mirror URL being appended to the file's base name
+   */
+  static File mirrorFile(final File file, final String mirrorURL) {
+    final String name = file.getName();
+    final int dot = name.lastIndexOf('.');
+    final String baseName = dot > 0 ? name.substring(0, dot) : name;
+    final String extension = dot > 0 ? name.substring(dot) : "";
+    return new File(file.getParentFile(), baseName + "-" + SchemaCache.escape(mirrorURL) + extension);
   }
 
-  private List<Path> collectSchemas() throws MojoExecutionException {
-    final List<Path> schemaPaths = new ArrayList<>();
-    try {
-      Files.walkFileTree(Paths.get(schemaDir.getAbsolutePath()), new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
-          if (path.toString().endsWith(schemaFileExt) && path.getFileName().toString().charAt(0) != '.') {
-            schemaPaths.add(path);
-          }
-          return FileVisitResult.CONTINUE;
+  RegistrationEngine createEngine() throws MojoExecutionException {
+    final RegistrationEngine engine = new RegistrationEngine(getLog(), this, serverURL, threads);
+    engine.skipEquivalent = skipEquivalent;
+    engine.minify = minify;
+    engine.orderByReferences = orderByReferences;
+    engine.subjectLookupThreshold = subjectLookupThreshold;
+    engine.reportFile = reportFile;
+    if (validate) {
+      try {
+        engine.validation = SchemaValidator.Compatibility.parse(compatibility);
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(format(
+            "Invalid <compatibility> parameter value %s -- must be one of none, backward, forward or full", compatibility), e);
+      }
+    }
+    return engine;
+  }
+
+  /**
+   * Records the execution of the goal by this project, along with its schema set if deferred to the end of the build.
+   * @param deferred null if this project registered its schemas right away
+   * @return the schema sets waiting for the end of the build, along with the mojo to register them, if this project
+   * was the last one expected to execute the goal and any were deferred; null otherwise
+   * @throws MojoFailureException if this project is the last expected one of a sequential build, but others did not
+   * execute the goal while schemas were deferred
+   */
+  private PendingRegistration executed(final SchemaSet deferred) throws MojoExecutionException, MojoFailureException {
+    synchronized (PENDING_REGISTRATIONS) {
+      PendingRegistration pending = PENDING_REGISTRATIONS.get(session);
+      if (pending == null) {
+        pending = new PendingRegistration(registeringProjects());
+        PENDING_REGISTRATIONS.put(session, pending);
+      }
+      if (!pending.expectedProjects.contains(project.getId())) {
+        if (deferred != null) {
+          throw new MojoExecutionException(format("Invalid <registerAtEnd> parameter value true -- %s has no execution"
+              + " of the %s or %s goals in its POM, the modules waited for are %s", project.getId(), GOAL,
+              ImportMojo.GOAL, pending.expectedProjects));
+        }
+        return null;
+      }
+      if (deferred != null) {
+        if (pending.registrar != null && !serverURL.equals(pending.registrar.serverURL)) {
+          throw new MojoExecutionException(format("Invalid <serverURL> parameter value %s -- modules registering at end"
+              + " must use the same schema-repo, others use %s", serverURL, pending.registrar.serverURL));
+        }
+        pending.schemaSets.add(deferred);
+        pending.registrar = this;
+      }
+      pending.executedProjects.add(project.getId());
+      final List<String> missingProjects = new ArrayList<>(pending.expectedProjects);
+      missingProjects.removeAll(pending.executedProjects);
+      if (missingProjects.isEmpty()) {
+        PENDING_REGISTRATIONS.remove(session);
+        return pending.schemaSets.isEmpty() ? null : pending;
+      }
+      // modules of sequential builds execute in reactor order, those still missing at the last one never will
+      final boolean parallel = session != null && session.isParallel();
+      if (!parallel && project.getId().equals(pending.expectedProjects.get(pending.expectedProjects.size() - 1))) {
+        PENDING_REGISTRATIONS.remove(session);
+        if (!pending.schemaSets.isEmpty()) {
+          throw new MojoFailureException(this, "Schemas left unregistered",
+              format("Schemas of %s modules were deferred to the end of the build, but %s did not execute the %s or %s"
+                  + " goals, so none were registered", pending.schemaSets.size(), missingProjects, GOAL,
+                  ImportMojo.GOAL));
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * @return ids of the reactor projects expected to execute this goal or <pre>import-schemas</pre>, in reactor order:
+   * those with an execution of either goal in their POM, or all of them if none has one (goal invoked from the command
+   * line)
+   */
+  private List<String> registeringProjects() {
+    if (reactorProjects == null || reactorProjects.isEmpty()) {
+      return Collections.singletonList(project.getId());
+    }
+    final List<String> registering = new ArrayList<>();
+    final List<String> all = new ArrayList<>();
+    for (MavenProject reactorProject : reactorProjects) {
+      all.add(reactorProject.getId());
+      for (Object plugin : reactorProject.getBuildPlugins()) {
+        if (PLUGIN_KEY.equals(((Plugin) plugin).getKey()) && registers((Plugin) plugin)) {
+          registering.add(reactorProject.getId());
+          break;
         }
-      });
+      }
+    }
+    return registering.isEmpty() ? all : registering;
+  }
+
+  /**
+   * @return whether one of the plugin's executions registers or imports schemas
+   */
+  private static boolean registers(final Plugin plugin) {
+    for (PluginExecution execution : plugin.getExecutions()) {
+      if (execution.getGoals().contains(GOAL) || execution.getGoals().contains(ImportMojo.GOAL)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  RegistrationManifest loadManifest() throws MojoExecutionException {
+    try {
+      final RegistrationManifest manifest = RegistrationManifest.load(manifestFile, serverURL, force);
+      if (manifest.previousSize() > 0) {
+        getLog().info(format("Loaded %s previously registered schemas from %s", manifest.previousSize(), manifestFile));
+      } else if (force) {
+        getLog().info("Forced registration of all schemas, ignoring the manifest");
+      }
+      return manifest;
     } catch (IOException e) {
-      throw new MojoExecutionException(format("Failed to walk %s", schemaDir), e);
+      throw new MojoExecutionException(format("Failed to read registration manifest %s", manifestFile), e);
+    }
+  }
+
+  /**
+   * Executions of the goal by the modules of a build, and the schema sets of those registering at end, waiting for the
+   * last one expected.
+   */
+  private static final class PendingRegistration {
+
+    final List<String> expectedProjects;
+    final Set<String> executedProjects = new HashSet<>();
+    final List<SchemaSet> schemaSets = new ArrayList<>();
+    /** The last mojo which deferred its schema set, whose settings the registration uses. */
+    RepoClientMojo registrar;
+
+    PendingRegistration(final List<String> expectedProjects) {
+      this.expectedProjects = expectedProjects;
     }
-    getLog().info(format("Found %s schema files", schemaPaths.size()));
-    return schemaPaths;
+
   }
 
 }
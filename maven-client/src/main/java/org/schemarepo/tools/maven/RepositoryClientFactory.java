@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.util.Properties;
+
+import org.schemarepo.Repository;
+
+/**
+ * Strategy responsible for creating the client (and hence the transport) used to talk to the schema-repo.
+ * The driver mojo will invoke {@link #configure(java.util.Properties)} method after construction,
+ * and {@link #close()} once done with all the clients it created.
+ * Properties include the project's properties along with the plugin's <pre>http.*</pre> settings,
+ * see {@link PropertyKeys#HTTP_PROPERTIES_PREFIX}.
+ */
+public interface RepositoryClientFactory {
+
+  /**
+   * Create a client for the schema-repo at the given URL.
+   * @param serverURL HTTP URL to the running schema-repo, never null
+   * @return Repository client, must be safe for concurrent use
+   */
+  Repository createClient(String serverURL);
+
+  void configure(Properties properties);
+
+  /**
+   * Release any resources held by the factory or the clients it created.
+   */
+  void close();
+
+}
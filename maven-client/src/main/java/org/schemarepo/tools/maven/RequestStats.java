@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-operation counts of the requests sent to the schema-repo, along with the number of failed ones.
+ * Safe for concurrent use.
+ */
+class RequestStats {
+
+  private final ConcurrentMap<String, AtomicLong> requests = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+  void request(final String operation) {
+    counter(requests, operation).incrementAndGet();
+  }
+
+  void error(final String operation) {
+    counter(errors, operation).incrementAndGet();
+  }
+
+  long getRequests() {
+    return sum(requests);
+  }
+
+  long getErrors() {
+    return sum(errors);
+  }
+
+  /**
+   * @return request counts keyed by operation, in alphabetical order
+   */
+  Map<String, Long> getRequestsByOperation() {
+    return snapshot(requests);
+  }
+
+  void writeTo(final JsonWriter json) throws IOException {
+    json.beginObject()
+        .name("requests").value(getRequests())
+        .name("errors").value(getErrors());
+    json.name("byOperation").beginObject();
+    final Map<String, Long> errorsByOperation = snapshot(errors);
+    for (Map.Entry<String, Long> entry : getRequestsByOperation().entrySet()) {
+      final Long errorCnt = errorsByOperation.get(entry.getKey());
+      json.name(entry.getKey()).beginObject()
+          .name("requests").value(entry.getValue())
+          .name("errors").value(errorCnt != null ? errorCnt : 0)
+          .endObject();
+    }
+    json.endObject();
+    json.endObject();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s requests %s, %s errors", getRequests(), getRequestsByOperation(), getErrors());
+  }
+
+  private static AtomicLong counter(final ConcurrentMap<String, AtomicLong> counters, final String operation) {
+    AtomicLong counter = counters.get(operation);
+    if (counter == null) {
+      final AtomicLong newCounter = new AtomicLong();
+      counter = counters.putIfAbsent(operation, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  private static long sum(final Map<String, AtomicLong> counters) {
+    long sum = 0;
+    for (AtomicLong counter : counters.values()) {
+      sum += counter.get();
+    }
+    return sum;
+  }
+
+  private static Map<String, Long> snapshot(final Map<String, AtomicLong> counters) {
+    final Map<String, Long> snapshot = new TreeMap<>();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().get());
+    }
+    return snapshot;
+  }
+
+}
@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.HdrHistogram.Histogram;
+import org.schemarepo.SchemaValidationException;
+
+/**
+ * Invokes schema-repo operations, timing them into {@link RegistrationMetrics}.
+ * <p>Failed calls are retried up to <pre>retries</pre> times, sleeping a random duration between zero and an
+ * exponentially growing cap (starting at <pre>backoffMillis</pre>, capped at <pre>maxBackoffMillis</pre>) before each
+ * retry, so that clients backing off from an overloaded server don't come back in lockstep.
+ * Schema validation failures are not retried, as they would fail again.</p>
+ * <p>Optionally read-only calls are hedged: once a call has been in flight for longer than the
+ * <pre>hedgePercentile</pre> of the latencies observed so far for the same phase, an identical call is sent and
+ * whichever completes first wins. Subject creations and registrations are never hedged: the losing call can't be
+ * called back, so a hedged registration of a subject's version could land after its next version.
+ * At most <pre>maxHedgesInFlight</pre> hedges are outstanding at any time, which bounds the extra load.</p>
+ * <p>Optionally every attempt, though not the hedges, is paced by an {@link AdaptiveLimiter}, which is told about
+ * the outcome and latency of each one.</p>
+ * <p>Only idempotent operations may be invoked this way. Subject creation and schema registration both are:
+ * the schema-repo returns the existing subject or schema entry when asked to create it again.</p>
+ */
+class RetryingInvoker {
+
+  /** Latency samples needed before hedging kicks in. */
+  static final int HEDGE_MIN_SAMPLES = 20;
+  private static final int MAX_BACKOFF_SHIFT = 30;
+
+  private final int retries;
+  private final long backoffMillis;
+  private final long maxBackoffMillis;
+  private final double hedgePercentile;
+  private final Semaphore hedgePermits;
+  private final RegistrationMetrics metrics;
+  private final ExecutorService hedgeExecutor;
+  private final AdaptiveLimiter limiter;
+
+  RetryingInvoker(final int retries, final long backoffMillis, final long maxBackoffMillis, final double hedgePercentile,
+      final int maxHedgesInFlight, final RegistrationMetrics metrics) {
+    this(retries, backoffMillis, maxBackoffMillis, hedgePercentile, maxHedgesInFlight, metrics, null);
+  }
+
+  /**
+   * @param limiter paces the attempts, null not to
+   */
+  RetryingInvoker(final int retries, final long backoffMillis, final long maxBackoffMillis, final double hedgePercentile,
+      final int maxHedgesInFlight, final RegistrationMetrics metrics, final AdaptiveLimiter limiter) {
+    if (retries < 0 || backoffMillis < 0 || maxBackoffMillis < backoffMillis) {
+      throw new IllegalArgumentException("Invalid retry settings");
+    }
+    if (hedgePercentile < 0 || hedgePercentile >= 100) {
+      throw new IllegalArgumentException("Hedge percentile must be between 0 (disabled) and 100 (exclusive)");
+    }
+    this.retries = retries;
+    this.backoffMillis = backoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.hedgePercentile = hedgePercentile;
+    this.hedgePermits = new Semaphore(Math.max(1, maxHedgesInFlight));
+    this.metrics = metrics;
+    this.limiter = limiter;
+    if (hedgePercentile > 0) {
+      final AtomicInteger threadCnt = new AtomicInteger();
+      hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+          final Thread thread = new Thread(runnable, "schema-repo-request-" + threadCnt.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    } else {
+      hedgeExecutor = null;
+    }
+  }
+
+  /**
+   * Invokes the idempotent operation, retrying and hedging as configured.
+   * @param phase phase the successful call's latency is recorded under
+   */
+  <T> T invoke(final RegistrationMetrics.Phase phase, final Callable<T> call) throws Exception {
+    for (int attempt = 0; ; attempt++) {
+      if (limiter != null) {
+        limiter.acquire();
+      }
+      final long start = RegistrationMetrics.start();
+      final T result;
+      try {
+        result = hedgeExecutor != null && phase.isReadOnly() ? invokeHedged(phase, call) : call.call();
+      } catch (SchemaValidationException | InterruptedException e) {
+        release(phase, start, false);
+        throw e;
+      } catch (Exception e) {
+        // released before backing off, other calls may proceed meanwhile
+        release(phase, start, true);
+        if (attempt >= retries) {
+          throw e;
+        }
+        metrics.retries.incrementAndGet();
+        Thread.sleep(backoff(attempt));
+        continue;
+      }
+      release(phase, start, false);
+      metrics.record(phase, start);
+      return result;
+    }
+  }
+
+  void close() {
+    if (hedgeExecutor != null) {
+      hedgeExecutor.shutdownNow();
+    }
+  }
+
+  private void release(final RegistrationMetrics.Phase phase, final long start, final boolean failed) {
+    if (limiter != null) {
+      limiter.release(phase, RegistrationMetrics.start() - start, failed);
+    }
+  }
+
+  long backoff(final int attempt) {
+    final long cap = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, MAX_BACKOFF_SHIFT));
+    return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+  }
+
+  private <T> T invokeHedged(final RegistrationMetrics.Phase phase, final Callable<T> call) throws Exception {
+    final Histogram latencies = metrics.getHistogram(phase);
+    if (latencies.getTotalCount() < HEDGE_MIN_SAMPLES) {
+      return call.call();
+    }
+    final long thresholdMicros = latencies.getValueAtPercentile(hedgePercentile);
+    final CompletionService<T> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+    final Future<T> primary = completionService.submit(call);
+    Future<T> hedge = null;
+    // guards the hedge permit, which is released either by the hedge itself or, if it never got to run, by the caller
+    final AtomicBoolean hedgeStarted = new AtomicBoolean();
+    try {
+      Future<T> done = completionService.poll(thresholdMicros, TimeUnit.MICROSECONDS);
+      if (done == null) {
+        if (hedgePermits.tryAcquire()) {
+          metrics.hedges.incrementAndGet();
+          hedge = completionService.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+              if (!hedgeStarted.compareAndSet(false, true)) {
+                return null;
+              }
+              try {
+                return call.call();
+              } finally {
+                hedgePermits.release();
+              }
+            }
+          });
+        }
+        done = completionService.take();
+      }
+      int pending = hedge != null ? 1 : 0;
+      while (true) {
+        try {
+          final T result = done.get();
+          if (done == hedge) {
+            metrics.hedgeWins.incrementAndGet();
+          }
+          return result;
+        } catch (ExecutionException e) {
+          if (pending-- == 0) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          }
+          done = completionService.take();
+        }
+      }
+    } finally {
+      primary.cancel(true);
+      if (hedge != null) {
+        hedge.cancel(true);
+        if (hedgeStarted.compareAndSet(false, true)) {
+          hedgePermits.release();
+        }
+      }
+    }
+  }
+
+}
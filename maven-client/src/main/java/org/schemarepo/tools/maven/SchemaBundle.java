@@ -0,0 +1,287 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Schema files of a project packed into a single file, so they can be registered without walking
+ * and reading a schema directory.
+ * <p>Layout: a header (magic number, entry count and index offset), the entries' deflated UTF-8 content back to back,
+ * then the index: every entry's subject name, key, content hash, offset, compressed and original size, grouped by
+ * subject, each subject's entries in discovery order. Strings are stored as their byte length followed by UTF-8 bytes,
+ * numbers big-endian.</p>
+ * <p>Bundles are read through a memory mapping: opening one only decodes the index, the content of an entry is
+ * inflated when it is read. Reads are safe for concurrent use.</p>
+ */
+class SchemaBundle {
+
+  static final String TYPE = "srb";
+  static final String CLASSIFIER = "schemas";
+
+  private static final int MAGIC = 0x53524231;
+  private static final int HEADER_SIZE = 4 + 4 + 8;
+  /** Index entry with empty strings. */
+  private static final int MIN_ENTRY_SIZE = 3 * 4 + 8 + 4 + 4;
+
+  /**
+   * Index entry of a single schema.
+   */
+  static class Entry {
+
+    private final String subjectName;
+    private final String key;
+    private final String hash;
+    private final long offset;
+    private final int compressedLength;
+    private final int length;
+
+    Entry(final String subjectName, final String key, final String hash, final long offset, final int compressedLength,
+        final int length) {
+      this.subjectName = subjectName;
+      this.key = key;
+      this.hash = hash;
+      this.offset = offset;
+      this.compressedLength = compressedLength;
+      this.length = length;
+    }
+
+    String getSubjectName() {
+      return subjectName;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    String getHash() {
+      return hash;
+    }
+  }
+
+  private final File file;
+  private final ByteBuffer buffer;
+  private final List<Entry> entries;
+
+  private SchemaBundle(final File file, final ByteBuffer buffer, final List<Entry> entries) {
+    this.file = file;
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /**
+   * Maps the bundle into memory and decodes its index.
+   * @throws IOException also if the bundle is corrupted or truncated, e.g. its index points past its end
+   */
+  static SchemaBundle open(final File file) throws IOException {
+    final ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("%s is too large to be mapped", file));
+      }
+      // the mapping stays valid once the channel is closed, and is released along with the buffer
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException(String.format("%s is not a schema bundle", file));
+    }
+    final int entryCnt = buffer.getInt(4);
+    final long indexOffset = buffer.getLong(8);
+    if (entryCnt < 0 || indexOffset < HEADER_SIZE || indexOffset > buffer.limit()
+        || entryCnt > (buffer.limit() - indexOffset) / MIN_ENTRY_SIZE) {
+      throw new IOException(String.format("Corrupted or truncated index in %s", file));
+    }
+    final ByteBuffer index = buffer.duplicate();
+    index.position((int) indexOffset);
+    final List<Entry> entries = new ArrayList<>(entryCnt);
+    try {
+      for (int i = 0; i < entryCnt; i++) {
+        final Entry entry = new Entry(readString(index), readString(index), readString(index), index.getLong(),
+            index.getInt(), index.getInt());
+        // content lies between the header and the index
+        if (entry.offset < HEADER_SIZE || entry.compressedLength < 0 || entry.length < 0
+            || entry.offset + entry.compressedLength > indexOffset) {
+          throw new IOException(String.format("Corrupted or truncated index in %s, entry %s is out of bounds", file,
+              entry.key));
+        }
+        entries.add(entry);
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException(String.format("Corrupted or truncated index in %s", file), e);
+    }
+    return new SchemaBundle(file, buffer, Collections.unmodifiableList(entries));
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * @return all entries, grouped by subject
+   */
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Inflates the entry's content.
+   */
+  SchemaFile read(final Entry entry) throws IOException {
+    final byte[] compressed = new byte[entry.compressedLength];
+    final ByteBuffer slice = buffer.duplicate();
+    slice.position((int) entry.offset);
+    slice.get(compressed);
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      final byte[] content = new byte[entry.length];
+      int inflated = 0;
+      while (inflated < content.length) {
+        final int cnt = inflater.inflate(content, inflated, content.length - inflated);
+        if (cnt == 0 && (inflater.finished() || inflater.needsInput())) {
+          break;
+        }
+        inflated += cnt;
+      }
+      if (inflated != content.length) {
+        throw new IOException(String.format("Truncated entry %s in %s", entry.key, file));
+      }
+      return new SchemaFile(Paths.get(entry.key), entry.key, entry.subjectName,
+          new String(content, StandardCharsets.UTF_8), entry.hash);
+    } catch (DataFormatException e) {
+      throw new IOException(String.format("Corrupted entry %s in %s", entry.key, file), e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a bundle. Content is deflated as schemas are added, the index is kept in memory until {@link #close()}.
+   */
+  static class Writer implements Closeable {
+
+    private final File file;
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    private final byte[] chunk = new byte[8192];
+    private final Map<String, List<Entry>> index = new LinkedHashMap<>();
+    private long offset = HEADER_SIZE;
+    private int entryCnt;
+
+    Writer(final File file) throws IOException {
+      this.file = file;
+      Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      // placeholder, the header is only known once all the entries are written
+      out.write(new byte[HEADER_SIZE]);
+    }
+
+    /**
+     * Appends the schema, along with its subject name, key and hash.
+     */
+    void add(final SchemaFile schemaFile) throws IOException {
+      final byte[] content = schemaFile.getSchema().getBytes(StandardCharsets.UTF_8);
+      deflater.reset();
+      deflater.setInput(content);
+      deflater.finish();
+      compressed.reset();
+      while (!deflater.finished()) {
+        compressed.write(chunk, 0, deflater.deflate(chunk));
+      }
+      compressed.writeTo(out);
+      List<Entry> subjectEntries = index.get(schemaFile.getSubjectName());
+      if (subjectEntries == null) {
+        subjectEntries = new ArrayList<>();
+        index.put(schemaFile.getSubjectName(), subjectEntries);
+      }
+      subjectEntries.add(new Entry(schemaFile.getSubjectName(), schemaFile.getKey(), schemaFile.getHash(), offset,
+          compressed.size(), content.length));
+      offset += compressed.size();
+      entryCnt++;
+    }
+
+    int getEntryCnt() {
+      return entryCnt;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        for (List<Entry> subjectEntries : index.values()) {
+          for (Entry entry : subjectEntries) {
+            writeString(entry.subjectName);
+            writeString(entry.key);
+            writeString(entry.hash);
+            out.writeLong(entry.offset);
+            out.writeInt(entry.compressedLength);
+            out.writeInt(entry.length);
+          }
+        }
+      } finally {
+        out.close();
+        deflater.end();
+      }
+      try (RandomAccessFile header = new RandomAccessFile(file, "rw")) {
+        header.writeInt(MAGIC);
+        header.writeInt(entryCnt);
+        header.writeLong(offset);
+      }
+    }
+
+    private void writeString(final String value) throws IOException {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+}
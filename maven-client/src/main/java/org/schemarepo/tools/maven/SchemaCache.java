@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+/**
+ * Local on-disk cache of schema versions, shared by the builds of a machine.
+ * A schema-repo never changes the schema of a version once registered, so entries are keyed by server, subject and
+ * version ID and never expire. Each entry is a UTF-8 file, <pre>dir/server/subject/id</pre>, with the server URL,
+ * subject name and ID escaped into file names valid on any OS, which don't collide on case-insensitive file systems.
+ * Entries are written to a temporary file and moved into place, so concurrent builds never see partial entries.
+ * Safe for concurrent use.
+ */
+class SchemaCache {
+
+  /** Device names reserved by Windows, which cannot name a file whatever its extension. */
+  static final Pattern RESERVED_NAME = Pattern.compile("(con|prn|aux|nul|com[0-9]|lpt[0-9])(\\..*)?",
+      Pattern.CASE_INSENSITIVE);
+
+  private final Path root;
+
+  SchemaCache(final File dir, final String serverURL) {
+    this.root = dir.toPath().resolve(escape(serverURL));
+  }
+
+  /**
+   * @return the cached schema, null if the version is not in the cache
+   */
+  String get(final String subjectName, final String id) throws IOException {
+    try {
+      return new String(Files.readAllBytes(path(subjectName, id)), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  void put(final String subjectName, final String id, final String schema) throws IOException {
+    final Path path = path(subjectName, id);
+    Files.createDirectories(path.getParent());
+    final Path tmp = Files.createTempFile(path.getParent(), ".", ".tmp");
+    try {
+      Files.write(tmp, schema.getBytes(StandardCharsets.UTF_8));
+      try {
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private Path path(final String subjectName, final String id) {
+    return root.resolve(escape(subjectName)).resolve(escape(id));
+  }
+
+  static String escape(final String name) {
+    String encoded;
+    try {
+      // URLEncoder keeps '*' and '.', which are not safe in file names ('..', hidden files)
+      encoded = URLEncoder.encode(name, StandardCharsets.UTF_8.name()).replace("*", "%2A").replace(".", "%2E");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    if (RESERVED_NAME.matcher(encoded).matches()) {
+      encoded = String.format("%%%02X", (int) encoded.charAt(0)) + encoded.substring(1);
+    }
+    // capitals are marked, so that names differing only by case don't collide on case-insensitive file systems
+    final StringBuilder escaped = new StringBuilder(encoded.length());
+    for (int i = 0; i < encoded.length(); i++) {
+      final char c = encoded.charAt(i);
+      if (c == '%') {
+        escaped.append(encoded, i, i + 3);
+        i += 2;
+      } else {
+        if (c >= 'A' && c <= 'Z') {
+          escaped.append('^');
+        }
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+}
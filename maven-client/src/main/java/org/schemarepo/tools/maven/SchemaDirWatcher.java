@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a schema directory, including the folders created in it later on, for created or modified schema files.
+ * Bursts of events, such as an editor saving several files or a checkout, are coalesced: changes are only reported once
+ * no event came for <pre>debounceMillis</pre>. Only the schema files selected by the {@link SchemaFilter} are reported,
+ * and the directories it prunes are not watched, as by {@link SchemaWalker}.
+ * If the file system drops events, the whole directory is reported as changed.
+ * Files and directories deleted while being looked at, e.g. temporary files of editors and checkouts, are skipped.
+ * Not safe for concurrent use.
+ */
+class SchemaDirWatcher implements Closeable {
+
+  private final Path root;
+  private final SchemaFilter filter;
+  private final long debounceMillis;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> dirs = new HashMap<>();
+
+  SchemaDirWatcher(final Path root, final SchemaFilter filter, final long debounceMillis) throws IOException {
+    this.root = root;
+    this.filter = filter;
+    this.debounceMillis = debounceMillis;
+    this.watchService = root.getFileSystem().newWatchService();
+    watch(root, null);
+  }
+
+  /**
+   * Blocks until schema files get created or modified, then until things quiet down.
+   * @return the changed schema files, in the order they first changed
+   */
+  Set<Path> awaitChanges() throws IOException, InterruptedException {
+    final Set<Path> changed = new LinkedHashSet<>();
+    do {
+      WatchKey key = watchService.take();
+      while (key != null) {
+        collect(key, changed);
+        key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+      }
+    } while (changed.isEmpty());
+    return changed;
+  }
+
+  /**
+   * @return number of directories being watched
+   */
+  int getDirCnt() {
+    return dirs.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void collect(final WatchKey key, final Set<Path> changed) throws IOException {
+    final Path dir = dirs.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        watch(root, changed);
+        continue;
+      }
+      if (dir == null) {
+        continue;
+      }
+      final Path path = dir.resolve((Path) event.context());
+      if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+        // files may have been created in it before it got watched
+        watch(path, changed);
+      } else if (isSchemaFile(path)) {
+        changed.add(path);
+      }
+    }
+    if (!key.reset()) {
+      dirs.remove(key);
+    }
+  }
+
+  /**
+   * Watches the directory and its sub-directories.
+   * @param changed where to add the schema files found, null not to look for them
+   */
+  private void watch(final Path start, final Set<Path> changed) throws IOException {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+        if (filter.isPruned(root, dir)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        try {
+          dirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+        } catch (NoSuchFileException e) {
+          // deleted since
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(final Path path, final IOException e) throws IOException {
+        if (e instanceof NoSuchFileException) {
+          // deleted since
+          return FileVisitResult.CONTINUE;
+        }
+        throw e;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
+        if (changed != null && isSchemaFile(path)) {
+          changed.add(path);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private boolean isSchemaFile(final Path path) {
+    return filter.isSchemaFile(root, path);
+  }
+
+}
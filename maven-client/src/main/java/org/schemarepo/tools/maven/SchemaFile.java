@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+
+/**
+ * Schema file read into memory, along with the subject it maps to.
+ */
+class SchemaFile {
+
+  private final Path path;
+  private final String key;
+  private final String subjectName;
+  private final String schema;
+  private final String hash;
+  // set by the schema graph, before the schema is handed over to other threads
+  private Map<String, Schema> types;
+  private Schema avroSchema;
+
+  SchemaFile(final Path path, final String key, final String subjectName, final String schema, final String hash) {
+    this.path = path;
+    this.key = key;
+    this.subjectName = subjectName;
+    this.schema = schema;
+    this.hash = hash;
+  }
+
+  /**
+   * Reads the schema file.
+   * @param schemaDir the directory the schema was found in, used to derive the key
+   */
+  static SchemaFile read(final Path schemaDir, final Path path, final String subjectName, final Charset encoding)
+      throws IOException {
+    final byte[] content = Files.readAllBytes(path);
+    final String key = schemaDir.relativize(path).toString().replace(File.separatorChar, '/');
+    return new SchemaFile(path, key, subjectName, new String(content, encoding), RegistrationManifest.hash(content));
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  /**
+   * @return path relative to the schema directory, using forward slashes
+   */
+  String getKey() {
+    return key;
+  }
+
+  String getSubjectName() {
+    return subjectName;
+  }
+
+  String getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return hash of the raw file content, see {@link RegistrationManifest#hash(byte[])}
+   */
+  String getHash() {
+    return hash;
+  }
+
+  /**
+   * Records the Avro schema as parsed against the named types defined by the schemas it references.
+   * @param avroSchema null if the schema did not parse
+   */
+  void parsed(final Map<String, Schema> types, final Schema avroSchema) {
+    this.types = types;
+    this.avroSchema = avroSchema;
+  }
+
+  /**
+   * @return the named types defined by the schemas this one references, null if it was not parsed against them
+   * @see SchemaGraph
+   */
+  Map<String, Schema> getTypes() {
+    return types;
+  }
+
+  /**
+   * @return the Avro schema parsed against {@link #getTypes()}, null if it did not parse or was not parsed yet
+   */
+  Schema getAvroSchema() {
+    return avroSchema;
+  }
+
+  @Override
+  public String toString() {
+    return path.toString();
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selection of the schema files under a schema directory: files ending with the schema file extension, matching any
+ * of the include globs (all files if there are none) and none of the exclude globs. Hidden files and directories,
+ * starting with dot ('.'), are always left out.
+ * Globs use the {@link FileSystem#getPathMatcher(String)} syntax and are matched against paths relative to the schema
+ * directory. As with Maven's own includes and excludes, a leading <pre>**&#47;</pre> also matches at the top of the
+ * schema directory, and a directory matching an exclude glob, or its trailing <pre>&#47;**</pre> stripped, is pruned
+ * without being walked.
+ * Safe for concurrent use.
+ */
+class SchemaFilter {
+
+  private static final String ANY_DIRS = "**/";
+  private static final String ANY_CONTENT = "/**";
+
+  private final String schemaFileExt;
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+  private final List<PathMatcher> excludedDirs;
+
+  /**
+   * @throws IllegalArgumentException if a glob is invalid
+   */
+  SchemaFilter(final FileSystem fileSystem, final String schemaFileExt, final List<String> includes,
+      final List<String> excludes) {
+    this.schemaFileExt = schemaFileExt;
+    this.includes = matchers(fileSystem, includes, false);
+    this.excludes = matchers(fileSystem, excludes, false);
+    this.excludedDirs = matchers(fileSystem, excludes, true);
+  }
+
+  /**
+   * @return a filter only checking the schema file extension
+   */
+  static SchemaFilter of(final Path root, final String schemaFileExt) {
+    return new SchemaFilter(root.getFileSystem(), schemaFileExt, Collections.<String>emptyList(),
+        Collections.<String>emptyList());
+  }
+
+  /**
+   * @param path a file under <pre>root</pre>
+   */
+  boolean isSchemaFile(final Path root, final Path path) {
+    if (!path.toString().endsWith(schemaFileExt) || isHidden(path)) {
+      return false;
+    }
+    final Path relativePath = root.relativize(path);
+    return (includes.isEmpty() || matches(includes, relativePath)) && !matches(excludes, relativePath);
+  }
+
+  /**
+   * @param dir a directory under <pre>root</pre>, or <pre>root</pre> itself which is never pruned
+   * @return whether the directory and everything under it is to be skipped
+   */
+  boolean isPruned(final Path root, final Path dir) {
+    if (dir.equals(root)) {
+      return false;
+    }
+    return isHidden(dir) || matches(excludedDirs, root.relativize(dir));
+  }
+
+  String getSchemaFileExt() {
+    return schemaFileExt;
+  }
+
+  private static boolean isHidden(final Path path) {
+    final Path fileName = path.getFileName();
+    return fileName != null && fileName.toString().startsWith(".");
+  }
+
+  private static boolean matches(final List<PathMatcher> matchers, final Path relativePath) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<PathMatcher> matchers(final FileSystem fileSystem, final List<String> globs,
+      final boolean dirs) {
+    final List<PathMatcher> matchers = new ArrayList<>();
+    if (globs == null) {
+      return matchers;
+    }
+    for (String glob : globs) {
+      final String trimmed = glob.trim();
+      final List<String> variants = new ArrayList<>();
+      variants.add(trimmed);
+      if (dirs && trimmed.endsWith(ANY_CONTENT)) {
+        variants.add(trimmed.substring(0, trimmed.length() - ANY_CONTENT.length()));
+      }
+      for (String variant : new ArrayList<>(variants)) {
+        if (variant.startsWith(ANY_DIRS)) {
+          variants.add(variant.substring(ANY_DIRS.length()));
+        }
+      }
+      for (String variant : variants) {
+        if (!variant.isEmpty()) {
+          matchers.add(fileSystem.getPathMatcher("glob:" + variant));
+        }
+      }
+    }
+    return matchers;
+  }
+
+}
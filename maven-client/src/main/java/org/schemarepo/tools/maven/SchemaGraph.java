@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avro.Schema;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Graph of the references between Avro schema files: a file depends on the files defining the named types
+ * (records, enums, fixed) it refers to without defining them itself. Schemas are grouped into levels, each one only
+ * depending on the previous ones, so that the schemas of a level can be registered in parallel once the previous
+ * levels are done.
+ * <p>Named types are resolved as Avro does, against the namespace of the enclosing named type, falling back to the
+ * unqualified name. A type defined by several files resolves to the first of them in discovery order. Types referenced
+ * but defined by none of the files, or defined differently by several ones, and cycles of references are reported as
+ * problems. Other schema files have no references and belong to the first level.</p>
+ * <p>Once ordered, the Avro schemas are parsed level by level, each one against the named types defined by the schemas
+ * it depends on, see {@link SchemaFile#getAvroSchema()}.</p>
+ */
+class SchemaGraph {
+
+  private static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList(
+      "null", "boolean", "int", "long", "float", "double", "bytes", "string"));
+  private static final Set<String> NAMED = new HashSet<>(Arrays.asList("record", "error", "enum", "fixed"));
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final List<List<SchemaFile>> levels = new ArrayList<>();
+  private final List<String> problems = new ArrayList<>();
+
+  /**
+   * @param schemaFiles in discovery order, which is preserved within each level
+   */
+  SchemaGraph(final List<SchemaFile> schemaFiles) {
+    final int size = schemaFiles.size();
+    final List<Map<String, String>> references = new ArrayList<>(size);
+    final List<Map<String, JsonNode>> definedTypes = new ArrayList<>(size);
+    // definitions: the files defining each type, in discovery order
+    final Map<String, List<Integer>> definitions = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      final SchemaFile schemaFile = schemaFiles.get(i);
+      final Map<String, JsonNode> defined = new HashMap<>();
+      final Map<String, String> referenced = new LinkedHashMap<>();
+      if (AvroSchemas.isAvroSchemaFile(schemaFile.getKey())) {
+        try {
+          collect(MAPPER.readTree(schemaFile.getSchema()), "", defined, referenced);
+        } catch (IOException e) {
+          problems.add(format("%s is not valid JSON: %s", schemaFile.getPath(), e.getMessage()));
+        }
+      }
+      for (String name : defined.keySet()) {
+        List<Integer> definedBy = definitions.get(name);
+        if (definedBy == null) {
+          definedBy = new ArrayList<>(1);
+          definitions.put(name, definedBy);
+        }
+        definedBy.add(i);
+      }
+      referenced.keySet().removeAll(defined.keySet());
+      references.add(referenced);
+      definedTypes.add(defined);
+    }
+
+    // dependencies[i]: the files defining the types referenced by file i
+    final List<Set<Integer>> dependencies = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final Set<Integer> dependsOn = new LinkedHashSet<>();
+      for (Map.Entry<String, String> reference : references.get(i).entrySet()) {
+        String name = reference.getKey();
+        List<Integer> definedBy = definitions.get(name);
+        if (definedBy == null && reference.getValue() != null) {
+          name = reference.getValue();
+          definedBy = definitions.get(name);
+        }
+        if (definedBy == null) {
+          problems.add(format("%s references type %s, which none of the schemas defines", schemaFiles.get(i).getPath(),
+              reference.getKey()));
+          continue;
+        }
+        final int first = definedBy.get(0);
+        for (int other : definedBy.subList(1, definedBy.size())) {
+          if (!definedTypes.get(other).get(name).equals(definedTypes.get(first).get(name))) {
+            problems.add(format("%s references type %s, which %s and %s define differently",
+                schemaFiles.get(i).getPath(), name, schemaFiles.get(first).getPath(), schemaFiles.get(other).getPath()));
+            break;
+          }
+        }
+        dependsOn.add(first);
+      }
+      dependencies.add(dependsOn);
+    }
+    order(schemaFiles, dependencies);
+    if (problems.isEmpty()) {
+      parse(schemaFiles, dependencies, definedTypes);
+    }
+  }
+
+  /**
+   * @return the schema files grouped by level, empty if any problem was found
+   */
+  List<List<SchemaFile>> getLevels() {
+    return problems.isEmpty() ? levels : Collections.<List<SchemaFile>>emptyList();
+  }
+
+  List<String> getProblems() {
+    return problems;
+  }
+
+  /**
+   * Collects the full names of the named types defined and referenced by a schema.
+   * @param namespace of the enclosing named type, empty if none
+   * @param defined full names of the defined types, mapped to their definitions
+   * @param referenced full names of the referenced types, mapped to the name to fall back to if unqualified: Avro
+   * resolves these in the enclosing namespace first, then in the null namespace
+   */
+  private static void collect(final JsonNode node, final String namespace, final Map<String, JsonNode> defined,
+      final Map<String, String> referenced) {
+    if (node == null) {
+      return;
+    }
+    if (node.isTextual()) {
+      final String name = node.getTextValue();
+      if (!PRIMITIVES.contains(name)) {
+        final String fullName = fullName(name, namespace);
+        referenced.put(fullName, fullName.equals(name) ? null : name);
+      }
+    } else if (node.isArray()) {
+      for (JsonNode element : node) {
+        collect(element, namespace, defined, referenced);
+      }
+    } else if (node.isObject()) {
+      final JsonNode type = node.get("type");
+      final String typeName = type != null && type.isTextual() ? type.getTextValue() : null;
+      if (NAMED.contains(typeName) && node.get("name") != null && node.get("name").isTextual()) {
+        final JsonNode explicitNamespace = node.get("namespace");
+        final String fullName = fullName(node.get("name").getTextValue(),
+            explicitNamespace != null && explicitNamespace.isTextual() ? explicitNamespace.getTextValue() : namespace);
+        defined.put(fullName, node);
+        final String childNamespace = fullName.lastIndexOf('.') >= 0 ? fullName.substring(0, fullName.lastIndexOf('.')) : "";
+        final JsonNode fields = node.get("fields");
+        if (fields != null && fields.isArray()) {
+          for (JsonNode field : fields) {
+            collect(field.get("type"), childNamespace, defined, referenced);
+          }
+        }
+      } else if ("array".equals(typeName)) {
+        collect(node.get("items"), namespace, defined, referenced);
+      } else if ("map".equals(typeName)) {
+        collect(node.get("values"), namespace, defined, referenced);
+      } else {
+        // {"type": "string"}, {"type": "com.example.Name"} or a nested schema
+        collect(type, namespace, defined, referenced);
+      }
+    }
+  }
+
+  private static String fullName(final String name, final String namespace) {
+    return name.indexOf('.') >= 0 || namespace == null || namespace.isEmpty() ? name : namespace + "." + name;
+  }
+
+  /**
+   * Parses the Avro schemas level by level, each one with a parser seeded with the types known to the parsers of the
+   * schemas it depends on, but those it defines itself.
+   */
+  private void parse(final List<SchemaFile> schemaFiles, final List<Set<Integer>> dependencies,
+      final List<Map<String, JsonNode>> definedTypes) {
+    final Map<SchemaFile, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < schemaFiles.size(); i++) {
+      indexes.put(schemaFiles.get(i), i);
+    }
+    // types[i]: the types known to the parser of file i once done, null if it did not parse
+    final List<Map<String, Schema>> types =
+        new ArrayList<>(Collections.<Map<String, Schema>>nCopies(schemaFiles.size(), null));
+    for (List<SchemaFile> level : levels) {
+      for (SchemaFile schemaFile : level) {
+        if (!AvroSchemas.isAvroSchemaFile(schemaFile.getKey())) {
+          continue;
+        }
+        final int i = indexes.get(schemaFile);
+        final Map<String, Schema> referenced = new HashMap<>();
+        for (int dependency : dependencies.get(i)) {
+          if (types.get(dependency) != null) {
+            referenced.putAll(types.get(dependency));
+          }
+        }
+        referenced.keySet().removeAll(definedTypes.get(i).keySet());
+        final Schema.Parser parser = new Schema.Parser().addTypes(referenced);
+        final Schema avroSchema = AvroSchemas.parse(parser, schemaFile.getSchema());
+        schemaFile.parsed(referenced, avroSchema);
+        if (avroSchema != null) {
+          types.set(i, parser.getTypes());
+        }
+      }
+    }
+  }
+
+  /**
+   * Groups the files into levels, breadth first from those without dependencies, and reports the cycles left over.
+   */
+  private void order(final List<SchemaFile> schemaFiles, final List<Set<Integer>> dependencies) {
+    final int size = schemaFiles.size();
+    final int[] pending = new int[size];
+    final List<List<Integer>> dependents = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      dependents.add(new ArrayList<Integer>());
+    }
+    List<Integer> ready = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      pending[i] = dependencies.get(i).size();
+      for (Integer dependency : dependencies.get(i)) {
+        dependents.get(dependency).add(i);
+      }
+      if (pending[i] == 0) {
+        ready.add(i);
+      }
+    }
+    int ordered = 0;
+    while (!ready.isEmpty()) {
+      Collections.sort(ready);
+      final List<SchemaFile> level = new ArrayList<>(ready.size());
+      final List<Integer> next = new ArrayList<>();
+      for (int i : ready) {
+        level.add(schemaFiles.get(i));
+        for (int dependent : dependents.get(i)) {
+          if (--pending[dependent] == 0) {
+            next.add(dependent);
+          }
+        }
+      }
+      levels.add(level);
+      ordered += ready.size();
+      ready = next;
+    }
+    if (ordered == size) {
+      return;
+    }
+    // every file left depends on another one left: following dependencies from any of them leads into a cycle
+    final Set<Integer> visited = new HashSet<>();
+    for (int start = 0; start < size; start++) {
+      if (pending[start] == 0 || visited.contains(start)) {
+        continue;
+      }
+      final Map<Integer, Integer> path = new LinkedHashMap<>();
+      int node = start;
+      while (!path.containsKey(node) && !visited.contains(node)) {
+        path.put(node, path.size());
+        for (int dependency : dependencies.get(node)) {
+          if (pending[dependency] > 0) {
+            node = dependency;
+            break;
+          }
+        }
+      }
+      if (path.containsKey(node)) {
+        final StringBuilder cycle = new StringBuilder();
+        final List<Integer> nodes = new ArrayList<>(path.keySet());
+        for (int i : nodes.subList(path.get(node), nodes.size())) {
+          cycle.append(schemaFiles.get(i).getPath()).append(" -> ");
+        }
+        problems.add(format("Cycle of references between schemas: %s%s", cycle, schemaFiles.get(node).getPath()));
+      }
+      visited.addAll(path.keySet());
+    }
+  }
+
+}
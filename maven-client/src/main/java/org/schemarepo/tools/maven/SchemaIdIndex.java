@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Schema;
+
+/**
+ * IDs of the Avro schemas registered or fetched during a build, keyed by subject and parsing fingerprint, written as a
+ * compact class path resource along with, optionally, the Java source of a class loading it, so that applications can
+ * resolve schema IDs without contacting the schema-repo.
+ * <p>Resource layout: magic number and entry count, then every entry's subject name, fingerprint and schema ID,
+ * sorted by subject and fingerprint so that builds are reproducible. Strings are written with
+ * {@link DataOutputStream#writeUTF(String)}, numbers big-endian.</p>
+ * <p>The generated class reads the resource on first use into open-addressing tables, see
+ * <pre>SchemaIdIndexLoader.java.template</pre>.</p>
+ * Safe for concurrent use.
+ */
+class SchemaIdIndex {
+
+  static final int MAGIC = 0x53524958;
+  private static final String LOADER_TEMPLATE = "SchemaIdIndexLoader.java.template";
+
+  private final ConcurrentMap<String, ConcurrentMap<Long, String>> ids = new ConcurrentHashMap<>();
+
+  /**
+   * Records the ID of the subject's schema with the given fingerprint, replacing any previous one.
+   */
+  void add(final String subjectName, final long fingerprint, final String schemaId) {
+    ConcurrentMap<Long, String> subjectIds = ids.get(subjectName);
+    if (subjectIds == null) {
+      final ConcurrentMap<Long, String> created = new ConcurrentHashMap<>();
+      subjectIds = ids.putIfAbsent(subjectName, created);
+      if (subjectIds == null) {
+        subjectIds = created;
+      }
+    }
+    subjectIds.put(fingerprint, schemaId);
+  }
+
+  /**
+   * Records the schema's ID, if it is an Avro schema.
+   */
+  void add(final SchemaFile schemaFile, final String schemaId) {
+    final Schema avroSchema = AvroSchemas.isAvroSchemaFile(schemaFile.getKey()) ? AvroSchemas.parse(schemaFile) : null;
+    if (avroSchema != null) {
+      add(schemaFile.getSubjectName(), AvroSchemas.fingerprint(avroSchema), schemaId);
+    }
+  }
+
+  /**
+   * Records the schema's ID, if it parses as an Avro schema.
+   */
+  void add(final String subjectName, final String schema, final String schemaId) {
+    final Schema avroSchema = AvroSchemas.parse(schema);
+    if (avroSchema != null) {
+      add(subjectName, AvroSchemas.fingerprint(avroSchema), schemaId);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Map<Long, String> subjectIds : ids.values()) {
+      size += subjectIds.size();
+    }
+    return size;
+  }
+
+  /**
+   * Writes the index resource.
+   */
+  void write(final File file) throws IOException {
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+      out.writeInt(MAGIC);
+      out.writeInt(size());
+      for (Map.Entry<String, ConcurrentMap<Long, String>> subject : new TreeMap<>(ids).entrySet()) {
+        for (Map.Entry<Long, String> entry : new TreeMap<>(subject.getValue()).entrySet()) {
+          out.writeUTF(subject.getKey());
+          out.writeLong(entry.getKey());
+          out.writeUTF(entry.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the source of the class loading the index resource.
+   * @param sourceDir source root, the file goes to the package's folder
+   * @param className fully qualified name of the class
+   * @param resource class path of the index resource
+   * @return the source file
+   */
+  static File writeLoader(final File sourceDir, final String className, final String resource) throws IOException {
+    final int dot = className.lastIndexOf('.');
+    final String source = readTemplate()
+        .replace("@package@", dot > 0 ? "package " + className.substring(0, dot) + ";\n" : "")
+        .replace("@class@", className.substring(dot + 1))
+        .replace("@resource@", resource)
+        .replace("@magic@", String.format("0x%08X", MAGIC));
+    final File file = new File(sourceDir, className.replace('.', File.separatorChar) + ".java");
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String readTemplate() throws IOException {
+    try (InputStream in = SchemaIdIndex.class.getResourceAsStream(LOADER_TEMPLATE)) {
+      if (in == null) {
+        throw new IOException(LOADER_TEMPLATE + " is missing from the plugin");
+      }
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      final byte[] chunk = new byte[8192];
+      int cnt;
+      while ((cnt = in.read(chunk)) >= 0) {
+        content.write(chunk, 0, cnt);
+      }
+      return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Changes registration would make to the schema-repo, per subject.
+ * Subjects are planned concurrently, but each of them by a single thread at a time.
+ */
+class SchemaPlan {
+
+  /**
+   * What registration would do with a schema file.
+   */
+  enum Change {
+    /** Would be registered as a new version. */
+    NEW_VERSION("newVersion"),
+    /** Same content as the version it would follow. */
+    UNCHANGED("unchanged"),
+    /** Same parsing canonical form as the version it would follow, see {@link AvroSchemas#fingerprint}. */
+    EQUIVALENT("equivalent");
+
+    private final String key;
+
+    Change(final String key) {
+      this.key = key;
+    }
+
+    String getKey() {
+      return key;
+    }
+  }
+
+  /**
+   * Planned changes of a single subject.
+   */
+  static class SubjectPlan {
+
+    private final String name;
+    private boolean created;
+    private String latestId;
+    private String latestSchema;
+    private final List<String> keys = new ArrayList<>();
+    private final List<Change> changes = new ArrayList<>();
+
+    SubjectPlan(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * Sets the subject's current state, before any of the planned changes.
+     * @param latestId ID of the latest version, null if the subject does not exist
+     */
+    void setCurrent(final boolean exists, final String latestId, final String latestSchema) {
+      this.created = !exists;
+      this.latestId = latestId;
+      this.latestSchema = latestSchema;
+    }
+
+    /**
+     * @return the schema planned changes are compared with: the latest version, or the last schema planned to be registered
+     */
+    String getLatestSchema() {
+      return latestSchema;
+    }
+
+    void add(final String key, final Change change, final String schema) {
+      keys.add(key);
+      changes.add(change);
+      if (change == Change.NEW_VERSION) {
+        latestSchema = schema;
+      }
+    }
+
+    int newVersions() {
+      int cnt = 0;
+      for (Change change : changes) {
+        if (change == Change.NEW_VERSION) {
+          cnt++;
+        }
+      }
+      return cnt;
+    }
+
+    String getStatus() {
+      return created ? "new" : newVersions() > 0 ? "changed" : "unchanged";
+    }
+  }
+
+  private final ConcurrentMap<String, SubjectPlan> subjects = new ConcurrentSkipListMap<>();
+  final AtomicInteger failed = new AtomicInteger();
+
+  /**
+   * @return the subject's plan, null if this is the first schema planned for it
+   */
+  SubjectPlan get(final String subjectName) {
+    return subjects.get(subjectName);
+  }
+
+  SubjectPlan add(final String subjectName) {
+    final SubjectPlan subjectPlan = new SubjectPlan(subjectName);
+    final SubjectPlan existing = subjects.putIfAbsent(subjectName, subjectPlan);
+    return existing != null ? existing : subjectPlan;
+  }
+
+  /**
+   * Logs the subjects which would change, along with a summary.
+   */
+  void log(final Log log) {
+    int created = 0;
+    int changed = 0;
+    int newVersions = 0;
+    for (SubjectPlan subject : subjects.values()) {
+      final int subjectNewVersions = subject.newVersions();
+      newVersions += subjectNewVersions;
+      if (subject.created) {
+        created++;
+        log.info(format("  + %s (new subject, %s versions)", subject.name, subjectNewVersions));
+      } else if (subjectNewVersions > 0) {
+        changed++;
+        log.info(format("  ~ %s (%s new versions after ID %s)", subject.name, subjectNewVersions, subject.latestId));
+      } else {
+        log.debug(format("    %s (unchanged)", subject.name));
+      }
+    }
+    log.info(format("Plan: %s subjects to create, %s to update, %s unchanged; %s new versions",
+        created, changed, subjects.size() - created - changed, newVersions));
+    if (failed.get() > 0) {
+      log.warn(format("%s schemas could not be planned, see above errors", failed.get()));
+    }
+  }
+
+  /**
+   * Writes the plan as JSON, subjects sorted by name.
+   */
+  void write(final File file, final String serverURL) throws IOException {
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      json.beginObject()
+          .name("serverURL").value(serverURL)
+          .name("failed").value(failed.get());
+      json.name("subjects").beginObject();
+      for (Map.Entry<String, SubjectPlan> entry : subjects.entrySet()) {
+        final SubjectPlan subject = entry.getValue();
+        json.name(entry.getKey()).beginObject()
+            .name("status").value(subject.getStatus())
+            .name("latestId").value(subject.latestId);
+        json.name("schemas").beginArray();
+        for (int i = 0; i < subject.keys.size(); i++) {
+          json.beginObject()
+              .name("path").value(subject.keys.get(i))
+              .name("change").value(subject.changes.get(i).getKey())
+              .endObject();
+        }
+        json.endArray();
+        json.endObject();
+      }
+      json.endObject();
+      json.endObject();
+    }
+  }
+
+}
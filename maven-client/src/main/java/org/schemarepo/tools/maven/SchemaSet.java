@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * Schema files contributed by one module: where to find them, how to derive their subject names and how to read them,
+ * along with the manifest of their previous registrations.
+ * Alternatively, the schemas can come from a {@link SchemaBundle}, which already holds their subject names.
+ */
+class SchemaSet {
+
+  private final String name;
+  private final Path root;
+  private final SchemaFilter filter;
+  private final int discoveryThreads;
+  private final SubjectNameStrategy subjectNameStrategy;
+  private final Charset charset;
+  private final RegistrationManifest manifest;
+  private final SchemaBundle bundle;
+
+  SchemaSet(final String name, final Path root, final SchemaFilter filter, final int discoveryThreads,
+      final SubjectNameStrategy subjectNameStrategy, final Charset charset, final RegistrationManifest manifest) {
+    this.name = name;
+    this.root = root;
+    this.filter = filter;
+    this.discoveryThreads = discoveryThreads;
+    this.subjectNameStrategy = subjectNameStrategy;
+    this.charset = charset;
+    this.manifest = manifest;
+    this.bundle = null;
+  }
+
+  SchemaSet(final String name, final SchemaBundle bundle, final RegistrationManifest manifest) {
+    this.name = name;
+    this.root = null;
+    this.filter = null;
+    this.discoveryThreads = 0;
+    this.subjectNameStrategy = null;
+    this.charset = null;
+    this.manifest = manifest;
+    this.bundle = bundle;
+  }
+
+  /**
+   * @return id of the contributing project
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * @return the schema directory, null for bundles
+   */
+  Path getRoot() {
+    return root;
+  }
+
+  /**
+   * @return the selection of the schema files in the schema directory, null for bundles
+   */
+  SchemaFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * @return number of threads walking the schema directory
+   */
+  int getDiscoveryThreads() {
+    return discoveryThreads;
+  }
+
+  SubjectNameStrategy getSubjectNameStrategy() {
+    return subjectNameStrategy;
+  }
+
+  Charset getCharset() {
+    return charset;
+  }
+
+  RegistrationManifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * @return the bundle holding the schemas, null if they are to be discovered in the schema directory
+   */
+  SchemaBundle getBundle() {
+    return bundle;
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + (bundle != null ? bundle.getFile() : root);
+  }
+
+}
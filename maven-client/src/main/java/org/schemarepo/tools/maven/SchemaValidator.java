@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.Subject;
+
+/**
+ * Pre-flight validation of all the schemas of a registration session, run before anything gets registered.
+ * Schema files are read as they are discovered, see {@link SchemaWalker#read}, and parsed concurrently using all the
+ * available cores; Avro schemas (<pre>.avsc</pre> files) must parse, and no two files may map to the same subject.
+ * Optionally, Avro schemas which would be registered (i.e. are not up to date according to the manifest) are checked
+ * for compatibility with their subject's latest version, fetched once per subject. Schemas of a {@link SchemaBundle}
+ * are validated from the bundle, under the subject names it holds.
+ */
+class SchemaValidator {
+
+  /**
+   * Compatibility required between a new Avro schema and its subject's latest version.
+   */
+  enum Compatibility {
+    NONE,
+    /** Data written with the latest version can be read with the new schema. */
+    BACKWARD,
+    /** Data written with the new schema can be read with the latest version. */
+    FORWARD,
+    /** Both backward and forward. */
+    FULL;
+
+    static Compatibility parse(final String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private final Compatibility compatibility;
+  private final SubjectCache subjects;
+  private final RetryingInvoker invoker;
+  private final int parallelism;
+  /** Latest version of each subject, parsed, fetched by the first schema which needs it. */
+  private final ConcurrentMap<String, Future<Schema>> latestSchemas = new ConcurrentHashMap<>();
+
+  SchemaValidator(final Compatibility compatibility, final SubjectCache subjects, final RetryingInvoker invoker,
+      final int parallelism) {
+    this.compatibility = compatibility;
+    this.subjects = subjects;
+    this.invoker = invoker;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @return the problems found, empty if all schemas are valid
+   */
+  List<String> validate(final List<SchemaSet> schemaSets) throws InterruptedException {
+    final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+    final List<Future<String[]>> results = new ArrayList<>();
+    final ExecutorService executor = newExecutor();
+    try {
+      for (final SchemaSet schemaSet : schemaSets) {
+        if (schemaSet.getBundle() != null) {
+          for (final SchemaBundle.Entry entry : schemaSet.getBundle().getEntries()) {
+            results.add(executor.submit(new Callable<String[]>() {
+              @Override
+              public String[] call() {
+                return validate(schemaSet, entry, problems);
+              }
+            }));
+          }
+          continue;
+        }
+        final SchemaWalker walker = SchemaWalker.read(schemaSet, null, new SchemaWalker.Consumer<RuntimeException>() {
+          @Override
+          public void accept(final SchemaFile schemaFile) {
+            results.add(executor.submit(new Callable<String[]>() {
+              @Override
+              public String[] call() {
+                return validate(schemaSet.getManifest(), schemaFile, problems);
+              }
+            }));
+          }
+
+          @Override
+          public void failed(final Path path, final Exception e) {
+            problems.add(format("%s could not be read or named: %s", path, e));
+          }
+        });
+        if (walker.getError() != null) {
+          problems.add(format("Failed to walk %s: %s", schemaSet.getRoot(), walker.getError()));
+        }
+      }
+      checkSubjects(results, problems);
+    } finally {
+      executor.shutdownNow();
+    }
+    return problems;
+  }
+
+  /**
+   * Validates schemas which were already read, against the manifests they are to be registered with.
+   * @return the problems found, empty if all schemas are valid
+   */
+  List<String> validate(final Map<SchemaFile, RegistrationManifest> schemaFiles) throws InterruptedException {
+    final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+    final List<Future<String[]>> results = new ArrayList<>();
+    final ExecutorService executor = newExecutor();
+    try {
+      for (final Map.Entry<SchemaFile, RegistrationManifest> schemaFile : schemaFiles.entrySet()) {
+        results.add(executor.submit(new Callable<String[]>() {
+          @Override
+          public String[] call() {
+            return validate(schemaFile.getValue(), schemaFile.getKey(), problems);
+          }
+        }));
+      }
+      checkSubjects(results, problems);
+    } finally {
+      executor.shutdownNow();
+    }
+    return problems;
+  }
+
+  private ExecutorService newExecutor() {
+    final AtomicInteger threadCnt = new AtomicInteger();
+    return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "schema-repo-validation-" + threadCnt.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Waits for the validation of every schema, and reports subject collisions in discovery order.
+   */
+  private static void checkSubjects(final List<Future<String[]>> results, final List<String> problems)
+      throws InterruptedException {
+    final Map<String, String> subjectFiles = new HashMap<>();
+    for (Future<String[]> result : results) {
+      final String[] subjectAndFile;
+      try {
+        subjectAndFile = result.get();
+      } catch (ExecutionException e) {
+        // validate(...) reports its problems instead of throwing
+        throw new IllegalStateException(e.getCause());
+      }
+      if (subjectAndFile == null) {
+        continue;
+      }
+      final String previous = subjectFiles.put(subjectAndFile[0], subjectAndFile[1]);
+      if (previous != null) {
+        problems.add(format("%s and %s both map to subject %s", previous, subjectAndFile[1], subjectAndFile[0]));
+      }
+    }
+  }
+
+  /**
+   * Validates a single schema of a bundle.
+   * @return subject name and entry key, null if the entry could not be read
+   */
+  private String[] validate(final SchemaSet schemaSet, final SchemaBundle.Entry entry, final List<String> problems) {
+    final SchemaFile schemaFile;
+    try {
+      schemaFile = schemaSet.getBundle().read(entry);
+    } catch (IOException e) {
+      problems.add(format("%s could not be read from %s: %s", entry.getKey(), schemaSet.getBundle().getFile(), e));
+      return null;
+    }
+    return validate(schemaSet.getManifest(), schemaFile, problems);
+  }
+
+  private String[] validate(final RegistrationManifest manifest, final SchemaFile schemaFile, final List<String> problems) {
+    if (AvroSchemas.isAvroSchemaFile(schemaFile.getKey())) {
+      final Schema schema = AvroSchemas.parse(schemaFile);
+      if (schema == null) {
+        problems.add(format("%s is not a valid Avro schema", schemaFile.getPath()));
+      } else if (compatibility != Compatibility.NONE && !manifest.isUpToDate(
+          schemaFile.getKey(), schemaFile.getSubjectName(), schemaFile.getHash())) {
+        checkCompatibility(schemaFile, schema, problems);
+      }
+    }
+    return new String[] {schemaFile.getSubjectName(), schemaFile.getPath().toString()};
+  }
+
+  private void checkCompatibility(final SchemaFile schemaFile, final Schema schema, final List<String> problems) {
+    final Schema latest;
+    try {
+      latest = latest(schemaFile.getSubjectName(), schemaFile.getTypes());
+    } catch (Exception e) {
+      problems.add(format("Failed to fetch the latest version of subject %s to check %s against: %s",
+          schemaFile.getSubjectName(), schemaFile.getPath(), e));
+      return;
+    }
+    if (latest == null) {
+      return;
+    }
+    if (compatibility != Compatibility.FORWARD) {
+      checkCompatibility(schema, latest, "read data written with", schemaFile, problems);
+    }
+    if (compatibility != Compatibility.BACKWARD) {
+      checkCompatibility(latest, schema, "write data readable with", schemaFile, problems);
+    }
+  }
+
+  private static void checkCompatibility(final Schema reader, final Schema writer, final String relation,
+      final SchemaFile schemaFile, final List<String> problems) {
+    final SchemaCompatibility.SchemaPairCompatibility result =
+        SchemaCompatibility.checkReaderWriterCompatibility(reader, writer);
+    if (result.getType() != SchemaCompatibility.SchemaCompatibilityType.COMPATIBLE) {
+      problems.add(format("%s cannot %s the latest version of subject %s: %s", schemaFile.getPath(), relation,
+          schemaFile.getSubjectName(), result.getDescription()));
+    }
+  }
+
+  /**
+   * @return the subject's latest version, null if the subject does not exist, is empty or its latest version
+   * is not an Avro schema
+   * @param types named types the latest version may reference, see {@link SchemaFile#getTypes()}
+   */
+  private Schema latest(final String subjectName, final Map<String, Schema> types) throws Exception {
+    Future<Schema> latest = latestSchemas.get(subjectName);
+    if (latest == null) {
+      final FutureTask<Schema> fetch = new FutureTask<>(new Callable<Schema>() {
+        @Override
+        public Schema call() throws Exception {
+          final Subject subject = subjects.get(subjectName);
+          if (subject == null) {
+            return null;
+          }
+          final SchemaEntry entry = invoker.invoke(RegistrationMetrics.Phase.LATEST_LOOKUP, new Callable<SchemaEntry>() {
+            @Override
+            public SchemaEntry call() {
+              return subject.latest();
+            }
+          });
+          return entry != null ? AvroSchemas.parse(entry.getSchema(), types) : null;
+        }
+      });
+      latest = latestSchemas.putIfAbsent(subjectName, fetch);
+      if (latest == null) {
+        latest = fetch;
+        fetch.run();
+      }
+    }
+    try {
+      return latest.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+}
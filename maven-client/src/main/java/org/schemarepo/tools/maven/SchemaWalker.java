@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Discovery stage of the registration pipeline.
+ * Walks the schema directory and hands each schema file selected by the {@link SchemaFilter} over to the consumer
+ * through a bounded queue, blocking while the consumer is behind, so memory use does not depend on the size of the tree.
+ * Pruned directories are not walked at all. With a parallelism above 1, sibling directories are walked concurrently
+ * by a fork/join pool, and schema files are handed over in no particular order.
+ * The end of the walk is signalled by {@link #END}, put into the queue even when the walk fails.
+ */
+class SchemaWalker implements Runnable {
+
+  /**
+   * End-of-walk marker, compare by identity.
+   */
+  static final Path END = Paths.get("");
+
+  private final Path root;
+  private final SchemaFilter filter;
+  private final int parallelism;
+  private final BlockingQueue<Path> queue;
+  private volatile IOException error;
+  private volatile boolean interrupted;
+  private final AtomicInteger schemaCnt = new AtomicInteger();
+  private volatile long finishNanos;
+
+  SchemaWalker(final Path root, final SchemaFilter filter, final int parallelism, final BlockingQueue<Path> queue) {
+    this.root = root;
+    this.filter = filter;
+    this.parallelism = parallelism;
+    this.queue = queue;
+  }
+
+  /**
+   * Walks the schema set's directory on a thread of its own, and reads the schema files discovered on the calling
+   * thread, overlapping with the discovery. The walk is stopped if reading fails, e.g. the consumer throws.
+   * @param metrics gets the schemas found and the discovery and read times, null if not recorded
+   * @return the walker, to be checked for errors
+   */
+  static <E extends Exception> SchemaWalker read(final SchemaSet schemaSet, final RegistrationMetrics metrics,
+      final Consumer<E> consumer) throws E, InterruptedException {
+    final Path root = schemaSet.getRoot();
+    final BlockingQueue<Path> discovered = new ArrayBlockingQueue<>(AbstractSchemaRepoMojo.DISCOVERY_QUEUE_CAPACITY);
+    final SchemaWalker walker = new SchemaWalker(root, schemaSet.getFilter(), schemaSet.getDiscoveryThreads(),
+        discovered);
+    final Thread walkerThread = new Thread(walker, "schema-repo-discovery");
+    walkerThread.setDaemon(true);
+
+    final long discoveryStart = RegistrationMetrics.start();
+    walkerThread.start();
+    try {
+      Path schemaPath;
+      while ((schemaPath = discovered.take()) != END) {
+        if (metrics != null) {
+          metrics.found.incrementAndGet();
+        }
+        final SchemaFile schemaFile;
+        try {
+          final long readStart = RegistrationMetrics.start();
+          schemaFile = SchemaFile.read(root, schemaPath, schemaSet.getSubjectNameStrategy().getSubjectName(schemaPath),
+              schemaSet.getCharset());
+          if (metrics != null) {
+            metrics.record(RegistrationMetrics.Phase.READ, readStart);
+          }
+        } catch (Exception e) {
+          consumer.failed(schemaPath, e);
+          continue;
+        }
+        consumer.accept(schemaFile);
+      }
+    } finally {
+      // a no-op once the walk is over, otherwise stops a walker which would block on the full queue forever
+      walkerThread.interrupt();
+    }
+    if (metrics != null) {
+      metrics.record(RegistrationMetrics.Phase.DISCOVERY, discoveryStart, walker.getFinishNanos());
+    }
+    return walker;
+  }
+
+  @Override
+  public void run() {
+    try {
+      if (parallelism > 1) {
+        walkInParallel();
+      } else {
+        walk();
+      }
+    } catch (IOException e) {
+      error = e;
+    } finally {
+      finishNanos = System.nanoTime();
+      try {
+        queue.put(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void walk() throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+        return filter.isPruned(root, dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
+        return visit(path) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+      }
+    });
+  }
+
+  private void walkInParallel() throws IOException {
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      final Future<Void> walk = pool.submit(new DirectoryWalk(root));
+      walk.get();
+    } catch (InterruptedException e) {
+      interrupted = true;
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // directory walks record their I/O failures, anything else (e.g. from the filter) ends up here
+      final Throwable cause = e.getCause();
+      synchronized (this) {
+        if (error == null) {
+          error = cause instanceof IOException ? (IOException) cause
+              : new IOException(String.format("Walk of %s failed", root), cause);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Hands the file over if it is a schema file.
+   * @return false if interrupted, and the walk should stop
+   */
+  private boolean visit(final Path path) {
+    if (filter.isSchemaFile(root, path)) {
+      try {
+        queue.put(path);
+      } catch (InterruptedException e) {
+        interrupted = true;
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      schemaCnt.incrementAndGet();
+    }
+    return true;
+  }
+
+  /**
+   * @return the failure which cut the walk short, if any
+   */
+  IOException getError() {
+    return error;
+  }
+
+  /**
+   * @return {@link System#nanoTime()} at which the walk ended
+   */
+  long getFinishNanos() {
+    return finishNanos;
+  }
+
+  /**
+   * @return number of schema files found so far
+   */
+  int getSchemaCnt() {
+    return schemaCnt.get();
+  }
+
+  /**
+   * Walk of a directory: its files are visited, its subdirectories walked as forked subtasks.
+   * Stops at the first failure or interruption of any walk, recording the failure.
+   */
+  private final class DirectoryWalk extends RecursiveAction {
+
+    private final Path dir;
+
+    DirectoryWalk(final Path dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    protected void compute() {
+      final List<DirectoryWalk> subtrees = new ArrayList<>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (Path path : entries) {
+          if (error != null || interrupted) {
+            return;
+          }
+          if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!filter.isPruned(root, path)) {
+              subtrees.add(new DirectoryWalk(path));
+            }
+          } else if (!visit(path)) {
+            return;
+          }
+        }
+      } catch (IOException e) {
+        synchronized (SchemaWalker.this) {
+          if (error == null) {
+            error = e;
+          }
+        }
+        return;
+      }
+      invokeAll(subtrees);
+    }
+  }
+
+  /**
+   * Receives the schema files read by {@link #read(SchemaSet, RegistrationMetrics, Consumer)}, in discovery order.
+   * @param <E> the exception thrown when a schema file cannot be taken in
+   */
+  interface Consumer<E extends Exception> {
+
+    void accept(SchemaFile schemaFile) throws E;
+
+    /**
+     * Called for the schema files which could not be read, or whose subject name could not be determined.
+     */
+    void failed(Path path, Exception e);
+
+  }
+
+}
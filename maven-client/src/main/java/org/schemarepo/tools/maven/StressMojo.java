@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.schemarepo.Repository;
+import org.schemarepo.Subject;
+
+/**
+ * Implements stress goal of schema-repo plugin: replays the schema files of the schema directory against a
+ * schema-repo for <pre>stressDuration</pre> seconds, to measure its latency and throughput under load.
+ * <p><pre>threads</pre> threads send operations back to back, each picked at random according to
+ * <pre>stressMix</pre>, e.g. <pre>create=5,register=25,lookup=70</pre>: subject creation, registration of a schema,
+ * or lookup of a schema by its content. Every schema file is replayed under <pre>stressMultiplier</pre> synthetic
+ * subjects, named after its own subject, prefixed by <pre>stressSubjectPrefix</pre> and suffixed by a number, so that a
+ * small corpus can stand for a large schema-repo. Subjects are created on their first use.</p>
+ * <p>Latencies are recorded in HDR histograms, per operation and per thread. Latency percentiles, error counts and
+ * throughput are logged and written to <pre>stressReportFile</pre> as JSON. Calls are neither retried nor paced,
+ * and threads wait for each response before sending the next request, so latencies under overload are understated.</p>
+ * <p>Don't point it at a production schema-repo: it registers schemas under the synthetic subjects.</p>
+ */
+@Mojo( name = "stress-schemas", threadSafe = true)
+public class StressMojo extends AbstractSchemaRepoMojo {
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "stressDuration", defaultValue = "60")
+  int stressDuration;
+
+  /** Relative weights of the operations, comma separated. */
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "stressMix", defaultValue = "create=5,register=25,lookup=70")
+  String stressMix;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "stressMultiplier", defaultValue = "10")
+  int stressMultiplier;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "stressSubjectPrefix", defaultValue = "stress.")
+  String stressSubjectPrefix;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "stressReportFile",
+      defaultValue = "${project.build.directory}/schema-repo/stress-report.json")
+  File stressReportFile;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    verifyServerURL();
+    verifySchemaDir();
+    verifyThreads();
+    if (stressDuration < 1) {
+      throw new MojoExecutionException(format("Invalid <stressDuration> parameter value %s -- must be a positive number of seconds",
+          stressDuration));
+    }
+    if (stressMultiplier < 1) {
+      throw new MojoExecutionException(format("Invalid <stressMultiplier> parameter value %s -- must be a positive integer",
+          stressMultiplier));
+    }
+    final OperationMix mix = parseMix();
+    final List<SchemaFile> corpus = loadCorpus(createSchemaSet(null));
+    if (corpus.isEmpty()) {
+      throw new MojoExecutionException(format("No schema files found in %s", schemaDir));
+    }
+    getLog().info(format("Replaying %s schemas under %s subjects each for %s s, using %s threads", corpus.size(),
+        stressMultiplier, stressDuration, threads));
+
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics);
+    final ConcurrentMap<String, Subject> subjects = new ConcurrentHashMap<>();
+    final List<StressStats.Recorder> recorders = Collections.synchronizedList(new ArrayList<StressStats.Recorder>());
+    final StressStats stats = new StressStats();
+
+    final AtomicInteger threadCnt = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "schema-repo-stress-" + threadCnt.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.SECONDS.toNanos(stressDuration);
+    try {
+      for (int i = 0; i < threads; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            final StressStats.Recorder recorder = new StressStats.Recorder();
+            try {
+              stress(client, corpus, mix, subjects, recorder, deadline);
+            } finally {
+              // only handed over once the thread is done recording, recorders not being safe for concurrent use
+              recorders.add(recorder);
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      // calls in flight at the deadline are given the read timeout to complete
+      if (!executor.awaitTermination(TimeUnit.SECONDS.toMillis(stressDuration) + httpReadTimeout, TimeUnit.MILLISECONDS)) {
+        executor.shutdownNow();
+        getLog().warn("Some calls did not complete in time, the threads which sent them are left out of the results");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while stressing the schema-repo", e);
+    } finally {
+      executor.shutdownNow();
+      closeRepositoryClientFactory(clientFactory);
+    }
+    stats.setElapsedNanos(System.nanoTime() - start);
+    synchronized (recorders) {
+      for (StressStats.Recorder recorder : recorders) {
+        stats.add(recorder);
+      }
+    }
+    stats.log(getLog());
+    getLog().info("  schema-repo " + metrics.requests);
+    try {
+      stats.writeReport(stressReportFile, serverURL, threads, corpus.size(), stressMultiplier, metrics.requests);
+      getLog().info(format("Wrote stress report to %s", stressReportFile));
+    } catch (IOException e) {
+      getLog().warn(format("Failed to write stress report %s", stressReportFile), e);
+    }
+    if (stats.getCount() == 0) {
+      throw new MojoFailureException(this, "Stress run failed",
+          format("None of the %s operations sent to the schema-repo succeeded", stats.getErrors()));
+    }
+  }
+
+  /**
+   * Sends random operations until the deadline, on the calling thread.
+   */
+  private void stress(final Repository client, final List<SchemaFile> corpus, final OperationMix mix,
+      final ConcurrentMap<String, Subject> subjects, final StressStats.Recorder recorder, final long deadline) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+      final SchemaFile schemaFile = corpus.get(random.nextInt(corpus.size()));
+      final String subjectName = stressSubjectPrefix + schemaFile.getSubjectName() + "." + random.nextInt(stressMultiplier);
+      final StressStats.Operation operation = mix.pick(random);
+      Subject subject = subjects.get(subjectName);
+      if (subject == null || operation == StressStats.Operation.CREATE) {
+        final long start = System.nanoTime();
+        try {
+          subject = client.register(subjectName, null);
+          recorder.record(StressStats.Operation.CREATE, start);
+        } catch (Exception e) {
+          recorder.error(StressStats.Operation.CREATE);
+          continue;
+        }
+        subjects.put(subjectName, subject);
+        if (operation == StressStats.Operation.CREATE) {
+          continue;
+        }
+      }
+      final long start = System.nanoTime();
+      try {
+        if (operation == StressStats.Operation.REGISTER) {
+          subject.register(schemaFile.getSchema());
+        } else {
+          subject.lookupBySchema(schemaFile.getSchema());
+        }
+        recorder.record(operation, start);
+      } catch (Exception e) {
+        recorder.error(operation);
+      }
+    }
+  }
+
+  private OperationMix parseMix() throws MojoExecutionException {
+    final Map<StressStats.Operation, Integer> weights = new EnumMap<>(StressStats.Operation.class);
+    long total = 0;
+    try {
+      for (String part : stressMix.split(",")) {
+        final String[] keyValue = part.split("=", 2);
+        final int weight = Integer.parseInt(keyValue[1].trim());
+        if (weight < 0) {
+          throw new IllegalArgumentException("negative weight");
+        }
+        final StressStats.Operation operation = StressStats.Operation.valueOf(keyValue[0].trim().toUpperCase(Locale.ROOT));
+        if (weights.put(operation, weight) != null) {
+          throw new MojoExecutionException(format(
+              "Invalid <stressMix> parameter value %s -- %s is weighted more than once", stressMix, keyValue[0].trim()));
+        }
+        total += weight;
+      }
+    } catch (RuntimeException e) {
+      throw new MojoExecutionException(format(
+          "Invalid <stressMix> parameter value %s -- must be comma separated operation=weight pairs, "
+          + "operations being create, register and lookup", stressMix), e);
+    }
+    if (total == 0) {
+      throw new MojoExecutionException(format("Invalid <stressMix> parameter value %s -- all weights are zero", stressMix));
+    }
+    if (total > Integer.MAX_VALUE) {
+      throw new MojoExecutionException(format(
+          "Invalid <stressMix> parameter value %s -- weights add up to more than %s", stressMix, Integer.MAX_VALUE));
+    }
+    return new OperationMix(weights);
+  }
+
+  private List<SchemaFile> loadCorpus(final SchemaSet schemaSet) throws MojoExecutionException {
+    final List<SchemaFile> corpus = new ArrayList<>();
+    final SchemaWalker walker;
+    try {
+      walker = SchemaWalker.read(schemaSet, null, new SchemaWalker.Consumer<RuntimeException>() {
+        @Override
+        public void accept(final SchemaFile schemaFile) {
+          corpus.add(schemaFile);
+        }
+
+        @Override
+        public void failed(final Path path, final Exception e) {
+          getLog().warn(format("Leaving %s out, could not read it or determine subject name", path), e);
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while reading the schema files", e);
+    }
+    if (walker.getError() != null) {
+      throw new MojoExecutionException(format("Failed to walk %s", schemaDir), walker.getError());
+    }
+    return corpus;
+  }
+
+  /**
+   * Weighted operations to pick from at random, by a binary search of the cumulative weights.
+   */
+  static final class OperationMix {
+
+    private final StressStats.Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    /**
+     * @param weights the weights, adding up to a positive int
+     */
+    OperationMix(final Map<StressStats.Operation, Integer> weights) {
+      final List<StressStats.Operation> weighted = new ArrayList<>();
+      final List<Integer> cumulative = new ArrayList<>();
+      int total = 0;
+      for (Map.Entry<StressStats.Operation, Integer> weight : weights.entrySet()) {
+        // zero weights are left out, so that the cumulative weights are strictly increasing
+        if (weight.getValue() > 0) {
+          total += weight.getValue();
+          weighted.add(weight.getKey());
+          cumulative.add(total);
+        }
+      }
+      operations = weighted.toArray(new StressStats.Operation[weighted.size()]);
+      cumulativeWeights = new int[cumulative.size()];
+      for (int i = 0; i < cumulativeWeights.length; i++) {
+        cumulativeWeights[i] = cumulative.get(i);
+      }
+    }
+
+    StressStats.Operation pick(final Random random) {
+      final int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+      // the first operation whose cumulative weight is above the point
+      final int i = Arrays.binarySearch(cumulativeWeights, point);
+      return operations[i >= 0 ? i + 1 : -i - 1];
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Results of a stress run: per-operation latency histograms (microsecond resolution), error counts and throughput.
+ * Each stress thread records into its own {@link Recorder}, which are merged once the run is over, so recording
+ * involves no contention.
+ * Not safe for concurrent use, recorders aside.
+ */
+class StressStats {
+
+  enum Operation {
+    /** Creation of a subject. */
+    CREATE,
+    /** Registration of a schema with an existing subject. */
+    REGISTER,
+    /** Lookup of a schema, by its content, within an existing subject. */
+    LOOKUP;
+
+    String getKey() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  /**
+   * Latencies and errors recorded by a single thread.
+   */
+  static class Recorder {
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+    Recorder() {
+      for (Operation operation : Operation.values()) {
+        histograms.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+        errors.put(operation, new long[1]);
+      }
+    }
+
+    void record(final Operation operation, final long startNanos) {
+      histograms.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    void error(final Operation operation) {
+      errors.get(operation)[0]++;
+    }
+  }
+
+  private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+  private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+  private long elapsedNanos;
+
+  StressStats() {
+    for (Operation operation : Operation.values()) {
+      histograms.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+      errors.put(operation, 0L);
+    }
+  }
+
+  void add(final Recorder recorder) {
+    for (Operation operation : Operation.values()) {
+      histograms.get(operation).add(recorder.histograms.get(operation));
+      errors.put(operation, errors.get(operation) + recorder.errors.get(operation)[0]);
+    }
+  }
+
+  void setElapsedNanos(final long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  long getCount(final Operation operation) {
+    return histograms.get(operation).getTotalCount();
+  }
+
+  long getErrors() {
+    long total = 0;
+    for (long operationErrors : errors.values()) {
+      total += operationErrors;
+    }
+    return total;
+  }
+
+  long getCount() {
+    long total = 0;
+    for (Histogram histogram : histograms.values()) {
+      total += histogram.getTotalCount();
+    }
+    return total;
+  }
+
+  /**
+   * @return successful operations per second
+   */
+  double getThroughput() {
+    return throughput(getCount());
+  }
+
+  void log(final Log log) {
+    log.info(format("Stress run took %s ms: %s operations, %.1f/s, %s errors", TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        getCount(), getThroughput(), getErrors()));
+    for (Operation operation : Operation.values()) {
+      final Histogram histogram = histograms.get(operation);
+      if (histogram.getTotalCount() == 0 && errors.get(operation) == 0) {
+        continue;
+      }
+      log.info(format("  %-9s count=%s errors=%s %.1f/s p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+          operation.getKey(), histogram.getTotalCount(), errors.get(operation), throughput(histogram.getTotalCount()),
+          RegistrationMetrics.millis(histogram.getValueAtPercentile(50)),
+          RegistrationMetrics.millis(histogram.getValueAtPercentile(99)),
+          RegistrationMetrics.millis(histogram.getValueAtPercentile(99.9)),
+          RegistrationMetrics.millis(histogram.getMaxValue())));
+    }
+  }
+
+  /**
+   * Writes a JSON report, latencies in milliseconds.
+   */
+  void writeReport(final File file, final String serverURL, final int threads, final int corpusSize,
+      final int multiplier, final RequestStats requests) throws IOException {
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      json.beginObject()
+          .name("serverURL").value(serverURL)
+          .name("threads").value(threads)
+          .name("corpusSize").value(corpusSize)
+          .name("multiplier").value(multiplier)
+          .name("elapsedMillis").value(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+          .name("operations").value(getCount())
+          .name("errors").value(getErrors())
+          .name("throughput").value(getThroughput());
+      json.name("transport");
+      requests.writeTo(json);
+      json.name("byOperation").beginObject();
+      for (Operation operation : Operation.values()) {
+        final Histogram histogram = histograms.get(operation);
+        json.name(operation.getKey()).beginObject()
+            .name("count").value(histogram.getTotalCount())
+            .name("errors").value(errors.get(operation))
+            .name("throughput").value(throughput(histogram.getTotalCount()));
+        RegistrationMetrics.writeLatencies(json, histogram);
+        json.endObject();
+      }
+      json.endObject();
+      json.endObject();
+    }
+  }
+
+  private double throughput(final long count) {
+    return elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+  }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.plugin.logging.Log;
+import org.schemarepo.Repository;
+import org.schemarepo.Subject;
+
+/**
+ * Subjects known to the schema-repo, keyed by name.
+ * Nothing is fetched before the first lookup, so a run which has nothing to register never hits the server.
+ * The first <pre>lookupThreshold</pre> subjects are then looked up one by one, concurrently when the callers are;
+ * past that many, the subject listing is downloaded once instead and serves all the following lookups. When the
+ * subjects needed are known upfront ({@link #expect(Collection)}), the choice is made right away, and only those
+ * subjects are kept while streaming through the listing. When they are discovered along the way instead
+ * ({@link #expect(String)}), the listing is picked as soon as there are more.
+ * Safe for concurrent use.
+ */
+class SubjectCache {
+
+  private final Repository client;
+  private final Log log;
+  private final RetryingInvoker invoker;
+  private final int lookupThreshold;
+  /** Subjects looked up one by one, null standing for those which do not exist. */
+  private final ConcurrentMap<String, Future<Subject>> lookups = new ConcurrentHashMap<>();
+  /** Null until the listing is downloaded. */
+  private volatile ConcurrentMap<String, Subject> subjects;
+  /** Subjects to keep from the listing, null to keep them all. */
+  private volatile Set<String> expected;
+  /** Subjects announced one at a time, until there are more than <pre>lookupThreshold</pre>. */
+  private final Set<String> announced = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /** Whether to download the listing on the next lookup, keeping all the subjects. */
+  private volatile boolean listAll;
+
+  /**
+   * @param lookupThreshold number of subjects looked up one by one before downloading the listing, 0 to always list
+   */
+  SubjectCache(final Repository client, final Log log, final RetryingInvoker invoker, final int lookupThreshold) {
+    this.client = client;
+    this.log = log;
+    this.invoker = invoker;
+    this.lookupThreshold = lookupThreshold;
+  }
+
+  /**
+   * Announces the subjects about to be looked up: if there are more than <pre>lookupThreshold</pre>, the listing will
+   * be downloaded on the first lookup, keeping those subjects only.
+   */
+  void expect(final Collection<String> subjectNames) {
+    final Set<String> names = new HashSet<>(subjectNames);
+    if (names.size() > lookupThreshold) {
+      expected = names;
+    }
+  }
+
+  /**
+   * Announces a subject about to be looked up, when they are discovered one at a time: once there are more than
+   * <pre>lookupThreshold</pre>, the listing will be downloaded on the next lookup, keeping all the subjects.
+   */
+  void expect(final String subjectName) {
+    if (!listAll && announced.add(subjectName) && announced.size() > lookupThreshold) {
+      listAll = true;
+      announced.clear();
+    }
+  }
+
+  /**
+   * Creates the subject, found not to exist by {@link #get(String)}.
+   */
+  Subject create(final String subjectName) throws Exception {
+    log.debug(format("Creating subject %s", subjectName));
+    Subject subject = invoker.invoke(RegistrationMetrics.Phase.SUBJECT_CREATION, new Callable<Subject>() {
+      @Override
+      public Subject call() {
+        return client.register(subjectName, null);
+      }
+    });
+    final ConcurrentMap<String, Subject> subjectMap = subjects;
+    if (subjectMap != null) {
+      final Subject existing = subjectMap.putIfAbsent(subjectName, subject);
+      if (existing != null) {
+        subject = existing;
+      }
+    }
+    lookups.put(subjectName, done(subject));
+    return subject;
+  }
+
+  /**
+   * @return the subject, null if it does not exist
+   */
+  Subject get(final String subjectName) throws Exception {
+    if (subjects == null && expected == null && !listAll
+        && (lookups.containsKey(subjectName) || lookups.size() < lookupThreshold)) {
+      return lookup(subjectName);
+    }
+    final Subject subject = subjects().get(subjectName);
+    if (subject != null) {
+      return subject;
+    }
+    // not kept from the listing, unless it does not exist
+    final Set<String> kept = expected;
+    return kept != null && !kept.contains(subjectName) ? lookup(subjectName) : null;
+  }
+
+  /**
+   * Looks the subject up on its own, once.
+   */
+  private Subject lookup(final String subjectName) throws Exception {
+    Future<Subject> lookup = lookups.get(subjectName);
+    if (lookup == null) {
+      final FutureTask<Subject> fetch = new FutureTask<>(new Callable<Subject>() {
+        @Override
+        public Subject call() throws Exception {
+          return invoker.invoke(RegistrationMetrics.Phase.SUBJECT_LOOKUP, new Callable<Subject>() {
+            @Override
+            public Subject call() {
+              return client.lookup(subjectName);
+            }
+          });
+        }
+      });
+      lookup = lookups.putIfAbsent(subjectName, fetch);
+      if (lookup == null) {
+        lookup = fetch;
+        fetch.run();
+      }
+    }
+    try {
+      return lookup.get();
+    } catch (ExecutionException e) {
+      // not cached, the next caller tries again
+      lookups.remove(subjectName, lookup);
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  private ConcurrentMap<String, Subject> subjects() throws Exception {
+    ConcurrentMap<String, Subject> subjectMap = subjects;
+    if (subjectMap == null) {
+      synchronized (this) {
+        subjectMap = subjects;
+        if (subjectMap == null) {
+          final Set<String> kept = expected;
+          final int[] listed = new int[1];
+          subjectMap = invoker.invoke(RegistrationMetrics.Phase.LISTING, new Callable<ConcurrentMap<String, Subject>>() {
+            @Override
+            public ConcurrentMap<String, Subject> call() {
+              final ConcurrentMap<String, Subject> listing = new ConcurrentHashMap<>();
+              listed[0] = 0;
+              for (Subject subject : client.subjects()) {
+                listed[0]++;
+                if (kept == null || kept.contains(subject.getName())) {
+                  listing.put(subject.getName(), subject);
+                }
+              }
+              return listing;
+            }
+          });
+          // subjects created since the listing was fetched, or which it did not keep
+          for (Map.Entry<String, Future<Subject>> lookup : lookups.entrySet()) {
+            final Future<Subject> result = lookup.getValue();
+            if (result.isDone()) {
+              try {
+                if (result.get() != null) {
+                  subjectMap.putIfAbsent(lookup.getKey(), result.get());
+                }
+              } catch (ExecutionException e) {
+                // failed lookups are not cached
+              }
+            }
+          }
+          log.info(format("Schema repo instance currently contains definitions for %s schemas%s", listed[0],
+              kept != null ? format(", kept the %s needed", subjectMap.size()) : ""));
+          subjects = subjectMap;
+        }
+      }
+    }
+    return subjectMap;
+  }
+
+  private static Future<Subject> done(final Subject subject) {
+    final FutureTask<Subject> result = new FutureTask<>(new Callable<Subject>() {
+      @Override
+      public Subject call() {
+        return subject;
+      }
+    });
+    result.run();
+    return result;
+  }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static java.lang.String.format;
+import static org.schemarepo.tools.maven.PropertyKeys.REPO_CLIENT_PROPERTY_PREFIX;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.schemarepo.Repository;
+
+/**
+ * Implements watch goal of schema-repo plugin: keeps running, and registers schema files as they get created or
+ * modified in the schema directory, typically against a local schema-repo during development.
+ * <p>File system events are coalesced until none came for <pre>watchDebounce</pre> milliseconds, then only the
+ * changed files are read, named and registered as by <pre>register-schemas</pre>, with the same client, subject
+ * cache and retry settings throughout the session. A file saved again with the same content is not sent twice.
+ * Deleted files are ignored.</p>
+ * <p>The session keeps its own in-memory record of what it registered: the registration manifest is neither used nor
+ * updated, and no pre-flight validation, ordering, mirroring, report or ID index is produced, so the corresponding
+ * <pre>register-schemas</pre> parameters don't exist here and <pre>idIndex</pre> is rejected.
+ * Stops when interrupted (Ctrl-C).</p>
+ */
+@Mojo( name = "watch-schemas", threadSafe = true)
+public class WatchMojo extends AbstractSchemaRepoMojo {
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "watchDebounce", defaultValue = "300")
+  long watchDebounce;
+
+  @Parameter(property = REPO_CLIENT_PROPERTY_PREFIX + "minify", defaultValue = "false")
+  boolean minify;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    verifyServerURL();
+    verifyThreads();
+    verifySchemaDir();
+    if (watchDebounce < 0) {
+      throw new MojoExecutionException(format("Invalid <watchDebounce> parameter value %s -- must not be negative",
+          watchDebounce));
+    }
+    if (idIndex) {
+      throw new MojoExecutionException("Invalid <idIndex> parameter value true -- watch-schemas writes no ID index");
+    }
+    final Charset charset = resolveEncoding();
+    final SubjectNameStrategy subjectNameStrategy = createSubjectNameStrategy();
+    final Path root = schemaDir.getAbsoluteFile().toPath();
+    final RegistrationManifest manifest = RegistrationManifest.inMemory(serverURL);
+    final RegistrationEngine engine = new RegistrationEngine(getLog(), this, serverURL, threads);
+    engine.skipEquivalent = skipEquivalent;
+    engine.minify = minify;
+    engine.subjectLookupThreshold = subjectLookupThreshold;
+
+    final RepositoryClientFactory clientFactory = createRepositoryClientFactory();
+    final RegistrationMetrics metrics = new RegistrationMetrics();
+    final Repository client = configureRepositoryClient(clientFactory, metrics);
+    final RetryingInvoker invoker = createInvoker(metrics);
+    // looked up on the first change, then kept up to date by the registrations
+    final SubjectCache subjects = new SubjectCache(client, getLog(), invoker, subjectLookupThreshold);
+    try (SchemaDirWatcher watcher = new SchemaDirWatcher(root, createSchemaFilter(), watchDebounce)) {
+      getLog().info(format("Watching %s directories under %s, press Ctrl-C to stop", watcher.getDirCnt(), root));
+      while (true) {
+        registerChanges(watcher.awaitChanges(), root, subjectNameStrategy, charset, engine, manifest, subjects, metrics,
+            invoker);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException(format("Failed to watch %s", root), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      getLog().info("Stopped watching");
+    } finally {
+      metrics.finish();
+      invoker.close();
+      closeRepositoryClientFactory(clientFactory);
+    }
+    metrics.log(getLog());
+  }
+
+  /**
+   * Registers the changed schema files whose content differs from what the session last registered for them.
+   */
+  private void registerChanges(final Set<Path> changed, final Path root, final SubjectNameStrategy subjectNameStrategy,
+      final Charset charset, final RegistrationEngine engine, final RegistrationManifest manifest, final SubjectCache subjects,
+      final RegistrationMetrics metrics, final RetryingInvoker invoker) throws InterruptedException {
+    final long start = System.currentTimeMillis();
+    final int registered = metrics.registered.get();
+    final int equivalent = metrics.equivalent.get();
+    final int failed = metrics.failed.get();
+    int unchanged = 0;
+    final RegistrationWorkers workers = new RegistrationWorkers(threads);
+    try {
+      for (Path path : changed) {
+        if (!Files.isRegularFile(path)) {
+          // deleted or renamed since
+          continue;
+        }
+        final SchemaFile schemaFile;
+        try {
+          final long readStart = RegistrationMetrics.start();
+          schemaFile = SchemaFile.read(root, path, subjectNameStrategy.getSubjectName(path), charset);
+          metrics.record(RegistrationMetrics.Phase.READ, readStart);
+          metrics.found.incrementAndGet();
+        } catch (NoSuchFileException e) {
+          // deleted since
+          continue;
+        } catch (Exception e) {
+          metrics.found.incrementAndGet();
+          metrics.failed.incrementAndGet();
+          getLog().error(format("Failed to register %s, could not read it or determine subject name", path), e);
+          continue;
+        }
+        if (manifest.isCurrent(schemaFile.getKey(), schemaFile.getSubjectName(), schemaFile.getHash())) {
+          unchanged++;
+          continue;
+        }
+        engine.submit(schemaFile, manifest, workers, subjects, metrics, invoker, null);
+      }
+      workers.awaitCompletion();
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      throw e;
+    }
+    getLog().info(format("%s changed files: %s registered, %s equivalent to the latest version, %s unchanged, "
+        + "%s failed in %s ms", changed.size(), metrics.registered.get() - registered,
+        metrics.equivalent.get() - equivalent, unchanged, metrics.failed.get() - failed,
+        System.currentTimeMillis() - start));
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Properties;
+
+import org.schemarepo.InMemoryRepository;
+import org.schemarepo.config.Config;
+import org.schemarepo.server.RepositoryServer;
+
+/**
+ * In-memory schema-repo listening on a free port, for the tests needing a running one.
+ * Each test starting its own instance starts from a clean state.
+ */
+final class InMemorySchemaRepo implements Closeable {
+
+  private static final int START_ATTEMPTS = 3;
+
+  private final RepositoryServer server;
+  private final String url;
+
+  private InMemorySchemaRepo(final RepositoryServer server, final String url) {
+    this.server = server;
+    this.url = url;
+  }
+
+  /**
+   * Starts a schema-repo on a free port, trying another one should the port get taken in the meantime.
+   */
+  static InMemorySchemaRepo start() throws Exception {
+    Exception failure = null;
+    for (int attempt = 0; attempt < START_ATTEMPTS; attempt++) {
+      final int port = freePort();
+      final Properties props = new Properties();
+      props.setProperty(Config.REPO_CLASS, InMemoryRepository.class.getName());
+      props.setProperty(Config.JETTY_PORT, Integer.toString(port));
+      props.setProperty(Config.JETTY_GRACEFUL_SHUTDOWN, "100");
+      final RepositoryServer server = new RepositoryServer(props);
+      try {
+        server.start();
+      } catch (Exception e) {
+        failure = e;
+        continue;
+      }
+      Thread.sleep(100);
+      return new InMemorySchemaRepo(server, url(port));
+    }
+    throw failure;
+  }
+
+  /**
+   * @return URL of a schema-repo which is not running
+   */
+  static String unusedURL() throws IOException {
+    return url(freePort());
+  }
+
+  String getURL() {
+    return url;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      server.stop();
+    } catch (Exception e) {
+      throw new IOException("Failed to stop the schema-repo at " + url, e);
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static String url(final int port) {
+    return "http://localhost:" + port + Config.getDefault(Config.JETTY_PATH);
+  }
+
+}
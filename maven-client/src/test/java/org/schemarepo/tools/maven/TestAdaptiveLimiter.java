@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestAdaptiveLimiter {
+
+  private static final RegistrationMetrics.Phase PHASE = RegistrationMetrics.Phase.REGISTRATION;
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+  @Test
+  public void testAimd() throws Exception {
+    ConcurrencyStats stats = new ConcurrencyStats();
+    AdaptiveLimiter limiter = new AdaptiveLimiter(true, 8, 0, stats);
+    call(limiter, FAST, false);
+    assertEquals("Expected the limit not to exceed its maximum", 8, limiter.getLimit());
+
+    // failures halve the limit, at most once per the fastest latency
+    call(limiter, FAST, true);
+    call(limiter, FAST, true);
+    assertEquals(4, limiter.getLimit());
+    for (int i = 0; i < 3; i++) {
+      Thread.sleep(2);
+      call(limiter, FAST, true);
+    }
+    assertEquals(1, limiter.getLimit());
+
+    // the limit only grows when callers are held back by it, by about one per limit's worth of calls
+    call(limiter, FAST, false);
+    assertEquals(2, limiter.getLimit());
+    call(limiter, FAST, false);
+    assertEquals(2, limiter.getLimit());
+    limiter.acquire();
+    for (int i = 0; i < 3; i++) {
+      call(limiter, FAST, false);
+    }
+    limiter.release(PHASE, FAST, false);
+    assertEquals(3, limiter.getLimit());
+
+    // calls much slower than the fastest one cut the limit, at most once per their latency
+    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(SLOW));
+    call(limiter, SLOW, false);
+    call(limiter, SLOW, false);
+    assertEquals(2, limiter.getLimit());
+
+    assertTrue("Expected the limit range: " + stats, stats.toString().startsWith("limit 1..8"));
+    assertTrue("Expected calls to have been in flight", stats.getMeanInFlight() > 0);
+  }
+
+  @Test
+  public void testRateCap() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(false, 4, 200, new ConcurrencyStats());
+    long start = System.nanoTime();
+    for (int i = 0; i < 21; i++) {
+      call(limiter, FAST, i % 2 == 0);
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("Expected calls to be spaced by 5ms, took " + elapsedMillis + "ms", elapsedMillis >= 95);
+    assertEquals("Expected a fixed limit", 4, limiter.getLimit());
+  }
+
+  private static void call(AdaptiveLimiter limiter, long latencyNanos, boolean failed) throws InterruptedException {
+    limiter.acquire();
+    limiter.release(PHASE, latencyNanos, failed);
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Test;
+
+public class TestFetchMojo {
+
+  public FetchMojo createMojo(String repoURL, File outputDirectory, File cacheDir, String... subjects) {
+    FetchMojo mojo = TestRepoClientMojo.configure(new FetchMojo(), null, ".properties");
+    mojo.serverURL = repoURL;
+    mojo.threads = 4;
+    mojo.outputDirectory = outputDirectory;
+    mojo.cacheDir = cacheDir;
+    mojo.subjects = Arrays.asList(subjects);
+    return mojo;
+  }
+
+  @Test
+  public void testFetch() throws Exception {
+    File outputDirectory = new File(System.getProperty("test.dir", "target/"), "test-fetch").getAbsoluteFile();
+    File cacheDir = new File(System.getProperty("test.dir", "target/"), "test-fetch-cache").getAbsoluteFile();
+    delete(outputDirectory);
+    delete(cacheDir);
+    File v1 = new File("src/test/resources/schema/v1/subdir/test_schema_1.properties");
+    File v2 = new File("src/test/resources/schema/v2/subdir/test_schema_1.properties");
+
+    String repoURL;
+    try (InMemorySchemaRepo server = InMemorySchemaRepo.start()) {
+      repoURL = server.getURL();
+      for (String schemaDir : new String[] {"v1/", "v2/"}) {
+        RepoClientMojo registration = new TestRepoClientMojo().createMojo(new File(schemaDir), ".properties");
+        registration.serverURL = repoURL;
+        registration.execute();
+      }
+      FetchMojo mojo = createMojo(repoURL, outputDirectory, cacheDir, "test_schema_1", "test_schema_1:0");
+      mojo.execute();
+      assertEquals(read(v2), read(new File(outputDirectory, "test_schema_1.properties")));
+      assertEquals(read(v1), read(new File(outputDirectory, "test_schema_1-0.properties")));
+      assertEquals("Expected the output directory to be added to the resources", 1, mojo.project.getResources().size());
+
+      try {
+        createMojo(repoURL, outputDirectory, cacheDir, "test_schema_1:42").execute();
+        fail("Expected fetching a missing version to fail");
+      } catch (MojoFailureException expected) {
+        // expected
+      }
+    }
+
+    // both versions were cached, the latest one by its ID
+    delete(outputDirectory);
+    createMojo(repoURL, outputDirectory, cacheDir, "test_schema_1:0", "test_schema_1:1").execute();
+    assertEquals(read(v1), read(new File(outputDirectory, "test_schema_1-0.properties")));
+    assertEquals(read(v2), read(new File(outputDirectory, "test_schema_1-1.properties")));
+
+    // latest versions are always looked up
+    try {
+      createMojo(repoURL, outputDirectory, cacheDir, "test_schema_1").execute();
+      fail("Expected fetching the latest version to fail with the schema-repo down");
+    } catch (MojoFailureException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFileNames() throws Exception {
+    assertEquals("com.acme.User", FetchMojo.fileName("com.acme.User"));
+    assertEquals("a%2Fb%3Ac", FetchMojo.fileName("a/b:c"));
+    assertEquals("%2E%2E", FetchMojo.fileName(".."));
+    assertEquals("%63on", FetchMojo.fileName("con"));
+
+    assertEquals("%2E%2E", SchemaCache.escape(".."));
+    assertEquals("a%2Fb", SchemaCache.escape("a/b"));
+    assertEquals("%4E^U^L", SchemaCache.escape("NUL"));
+    assertFalse("Expected names differing by case to be kept apart on case-insensitive file systems",
+        SchemaCache.escape("User").equalsIgnoreCase(SchemaCache.escape("user")));
+
+    try {
+      createMojo(InMemorySchemaRepo.unusedURL(), null, null, "User", "user").execute();
+      fail("Expected subjects saved to the same file to be rejected");
+    } catch (MojoExecutionException expected) {
+      // expected
+    }
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
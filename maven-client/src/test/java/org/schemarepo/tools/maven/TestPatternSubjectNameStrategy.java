@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class TestPatternSubjectNameStrategy {
+
+  private static final String PREFIX = "schema-repo.tools.registration.patternSubjectNameStrategy.";
+
+  @Test
+  public void testGetSubjectName() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(PREFIX + "pattern", "(.+)/v\\d+/(?<record>[^/]+)\\.avsc");
+    properties.setProperty(PREFIX + "template", "{1:lower}.{record:capitalize}");
+    properties.setProperty("schema-repo.tools.registration.schemaDir", Paths.get("/schemas").toAbsolutePath().toString());
+    PatternSubjectNameStrategy subjectNameStrategy = new PatternSubjectNameStrategy();
+    subjectNameStrategy.configure(properties);
+    Map<Path, String> testData = new LinkedHashMap<>();
+    testData.put(Paths.get("/schemas").toAbsolutePath().resolve("com/Acme/v2/order.avsc"), "com_acme.Order");
+    testData.put(Paths.get("/schemas").toAbsolutePath().resolve("com/Acme/v3/order.avsc"), "com_acme.Order");
+    testData.put(Paths.get("/schemas").toAbsolutePath().resolve("com/acme/invoice.avsc"), "invoice");
+    testData.put(Paths.get("org", "v1", "user.avsc"), "org.User");
+    testGetSubjectNameParametrized(subjectNameStrategy, testData);
+
+    properties = new Properties();
+    properties.setProperty(PREFIX + "pattern", "([^/]+)/([^/]+)/.*\\.avsc");
+    properties.setProperty(PREFIX + "template", "{2:upper}-{1}");
+    properties.setProperty(PREFIX + "fallback", "fail");
+    subjectNameStrategy = new PatternSubjectNameStrategy();
+    subjectNameStrategy.configure(properties);
+    testData = new LinkedHashMap<>();
+    testData.put(Paths.get("team", "orders", "created.avsc"), "ORDERS-team");
+    testGetSubjectNameParametrized(subjectNameStrategy, testData);
+    try {
+      subjectNameStrategy.getSubjectName(Paths.get("created.avsc"));
+      fail("Expected mismatching path to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testInvalidConfiguration() throws Exception {
+    assertInvalid(new Properties());
+    Properties properties = new Properties();
+    properties.setProperty(PREFIX + "pattern", "(.+)\\.avsc");
+    properties.setProperty(PREFIX + "template", "{2}");
+    assertInvalid(properties);
+    properties.setProperty(PREFIX + "pattern", "(?<name>.+)\\.avsc");
+    properties.setProperty(PREFIX + "template", "{nmae}");
+    assertInvalid(properties);
+    properties.setProperty(PREFIX + "template", "{1}");
+    properties.setProperty(PREFIX + "fallback", "ignore");
+    assertInvalid(properties);
+  }
+
+  private void assertInvalid(Properties properties) {
+    try {
+      new PatternSubjectNameStrategy().configure(properties);
+      fail("Expected invalid configuration to be rejected: " + properties);
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  private void testGetSubjectNameParametrized(PatternSubjectNameStrategy subjectNameStrategy, Map<Path, String> testData) {
+    for (Map.Entry<Path, String> entry : testData.entrySet()) {
+      assertEquals("broken " + subjectNameStrategy, entry.getValue(), subjectNameStrategy.getSubjectName(entry.getKey()));
+    }
+  }
+
+}
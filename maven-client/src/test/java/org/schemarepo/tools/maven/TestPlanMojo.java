@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.schemarepo.client.RESTRepositoryClient;
+import org.schemarepo.json.GsonJsonUtil;
+
+public class TestPlanMojo {
+
+  private static InMemorySchemaRepo server;
+  private static String serverURL;
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = InMemorySchemaRepo.start();
+    serverURL = server.getURL();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    server.close();
+  }
+
+  public PlanMojo createMojo(File schemaDir, File planFile) {
+    PlanMojo mojo = new PlanMojo();
+    MavenProject project = new MavenProject();
+    project.setFile(new File("src/test/resources/schema/dummy-file"));
+    mojo.setLog(new SystemStreamLog());
+    mojo.project = project;
+    mojo.schemaDir = schemaDir;
+    mojo.schemaFileExt = ".properties";
+    mojo.subjectNameStrategyClass = RepoClientMojo.DEFAULT_SUBJECT_NAME_STRATEGY_CLASS;
+    mojo.serverURL = serverURL;
+    mojo.threads = 4;
+    mojo.repositoryClientFactoryClass = RepoClientMojo.DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS;
+    mojo.httpKeepAlive = true;
+    mojo.httpConnectTimeout = 1000;
+    mojo.httpReadTimeout = 5000;
+    mojo.skipEquivalent = true;
+    mojo.planFile = planFile;
+    return mojo;
+  }
+
+  @Test
+  public void testPlan() throws Exception {
+    File planFile = new File(System.getProperty("test.dir", "target/"), "test-plan.json");
+    planFile.delete();
+    RESTRepositoryClient client = new RESTRepositoryClient(serverURL, new GsonJsonUtil(), true);
+
+    createMojo(new File("v1/"), planFile).execute();
+    String plan = read(planFile);
+    assertTrue("Expected new subjects: " + plan, plan.contains("\"status\": \"new\""));
+    assertFalse("Expected the plan not to change the schema-repo", client.subjects().iterator().hasNext());
+
+    RepoClientMojo registration = new TestRepoClientMojo().createMojo(new File("v1/"), ".properties");
+    registration.serverURL = serverURL;
+    registration.execute();
+
+    createMojo(new File("v1/"), planFile).execute();
+    plan = read(planFile);
+    assertFalse("Expected no changes: " + plan, plan.contains("\"newVersion\""));
+    assertTrue("Expected unchanged subjects: " + plan, plan.contains("\"status\": \"unchanged\""));
+
+    createMojo(new File("v2/"), planFile).execute();
+    plan = read(planFile);
+    assertTrue("Expected changed subjects: " + plan, plan.contains("\"status\": \"changed\""));
+    assertTrue("Expected new versions: " + plan, plan.contains("\"change\": \"newVersion\""));
+    assertFalse("Expected no new subjects: " + plan, plan.contains("\"status\": \"new\""));
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+  }
+
+}
@@ -23,20 +23,26 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
-import org.schemarepo.InMemoryRepository;
 import org.schemarepo.SchemaEntry;
 import org.schemarepo.Subject;
 import org.schemarepo.client.RESTRepositoryClient;
-import org.schemarepo.config.Config;
 import org.schemarepo.json.GsonJsonUtil;
-import org.schemarepo.server.RepositoryServer;
 
 /**
  * Testing the execution of the mojo.
@@ -45,29 +51,27 @@ import org.schemarepo.server.RepositoryServer;
  */
 public class TestRepoClientMojo {
 
-  private static final int JETTY_PORT = 32876;
-  private static final String REPO_URL = "http://localhost:" + JETTY_PORT + Config.getDefault(Config.JETTY_PATH);
-
-  private static RepositoryServer server;
+  private static InMemorySchemaRepo server;
+  private static String serverURL;
 
   @BeforeClass
   public static void startServer() throws Exception {
-    Properties props = new Properties();
-    props.setProperty(Config.REPO_CLASS, InMemoryRepository.class.getName());
-    props.setProperty(Config.JETTY_PORT, JETTY_PORT+"");
-    props.setProperty(Config.JETTY_GRACEFUL_SHUTDOWN, "100");
-    server = new RepositoryServer(props);
-    server.start();
-    Thread.sleep(100);
+    server = InMemorySchemaRepo.start();
+    serverURL = server.getURL();
   }
 
   @AfterClass
   public static void stopServer() throws Exception {
-    server.stop();
+    server.close();
   }
 
   public RepoClientMojo createMojo(File schemaDir, String schemaFileExt) {
-    RepoClientMojo mojo = new RepoClientMojo();
+    RepoClientMojo mojo = configure(new RepoClientMojo(), schemaDir, schemaFileExt);
+    mojo.compatibility = "none";
+    return mojo;
+  }
+
+  static <T extends AbstractSchemaRepoMojo> T configure(T mojo, File schemaDir, String schemaFileExt) {
     MavenProject project = new MavenProject();
     project.setFile(new File("src/test/resources/schema/dummy-file"));
     mojo.setLog(new SystemStreamLog() {
@@ -77,17 +81,22 @@ public class TestRepoClientMojo {
       }
     });
     mojo.project = project;
-    mojo.schemaFileExt = schemaFileExt;
     mojo.schemaDir = schemaDir;
     mojo.schemaFileExt = schemaFileExt != null ? schemaFileExt : RepoClientMojo.DEFAULT_SCHEMA_FILE_EXT;
     mojo.subjectNameStrategyClass = RepoClientMojo.DEFAULT_SUBJECT_NAME_STRATEGY_CLASS;
-    mojo.serverURL = REPO_URL;
+    mojo.serverURL = serverURL;
+    mojo.threads = Integer.parseInt(RepoClientMojo.DEFAULT_THREADS);
+    mojo.repositoryClientFactoryClass = RepoClientMojo.DEFAULT_REPOSITORY_CLIENT_FACTORY_CLASS;
+    mojo.httpKeepAlive = true;
+    mojo.httpConnectTimeout = 1000;
+    mojo.httpReadTimeout = 5000;
+    mojo.skipEquivalent = true;
     return mojo;
   }
 
   @Test
   public void testRegistration() throws Exception {
-    RESTRepositoryClient client = new RESTRepositoryClient(REPO_URL, new GsonJsonUtil(), true);
+    RESTRepositoryClient client = new RESTRepositoryClient(serverURL, new GsonJsonUtil(), true);
     // no schemas
     RepoClientMojo mojo = createMojo(new File("v1/"), null);
     mojo.execute();
@@ -97,6 +106,587 @@ public class TestRepoClientMojo {
     mojo.execute();
     assertSchema(client, "test_schema_1", "1");
     assertSchema(client, "test_schema_2", "1");
+
+    // new versions, registered concurrently
+    File reportFile = new File(System.getProperty("test.dir", "target/"), "test-registration-report.json");
+    reportFile.delete();
+    mojo = createMojo(new File("v2/"), ".properties");
+    mojo.threads = 4;
+    mojo.reportFile = reportFile;
+    mojo.execute();
+    String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+    assertTrue("Expected registrations in the report: " + report, report.contains("\"registered\": 2"));
+    assertTrue("Expected registration latencies in the report: " + report, report.contains("\"registration\": {"));
+    assertTrue("Expected request counts in the report: " + report, report.contains("\"register\": {"));
+    assertLatestSchema(client, "test_schema_1", new File(mojo.schemaDir, "subdir/test_schema_1.properties"));
+    assertLatestSchema(client, "test_schema_2", new File(mojo.schemaDir, "test_schema_2.properties"));
+  }
+
+  @Test
+  public void testIncrementalRegistration() throws Exception {
+    File manifestFile = new File(System.getProperty("test.dir", "target/"), "test-registration.manifest");
+    manifestFile.delete();
+
+    String repoURL;
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      repoURL = isolatedServer.getURL();
+      RepoClientMojo mojo = createMojo(new File("v1/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.manifestFile = manifestFile;
+      mojo.execute();
+      assertSchema(new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true), "test_schema_1", "1");
+      assertTrue("Expected manifest to be written", manifestFile.isFile());
+    }
+
+    // nothing changed, so the server is not even contacted
+    RepoClientMojo mojo = createMojo(new File("v1/"), ".properties");
+    mojo.serverURL = repoURL;
+    mojo.manifestFile = manifestFile;
+    mojo.execute();
+
+    // unless forced to
+    mojo = createMojo(new File("v1/"), ".properties");
+    mojo.serverURL = repoURL;
+    mojo.manifestFile = manifestFile;
+    mojo.force = true;
+    try {
+      mojo.execute();
+      fail("Expected forced registration to fail with the schema-repo down");
+    } catch (MojoFailureException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testHttpSettings() throws Exception {
+    // the settings go to the factory's own connection pool, whatever the JVM's settings
+    RepoClientMojo mojo = createMojo(new File("v1/"), ".properties");
+    mojo.httpKeepAlive = false;
+    mojo.httpMaxConnections = 2;
+    RepositoryClientFactory factory = mojo.createRepositoryClientFactory();
+    assertTrue(factory.toString(), factory.toString().contains("keepAlive=false, maxConnections=2"));
+    factory.close();
+    mojo.execute();
+
+    mojo = createMojo(new File("v1/"), ".properties");
+    mojo.httpMaxConnections = -1;
+    try {
+      mojo.execute();
+      fail("Expected a negative maxConnections to be rejected");
+    } catch (MojoExecutionException expected) {
+      assertTrue(expected.getCause().getMessage(), expected.getCause().getMessage().contains("maxConnections"));
+    }
+  }
+
+  @Test
+  public void testRegisterAtEnd() throws Exception {
+    File reportFile = new File(System.getProperty("test.dir", "target/"), "test-register-at-end-report.json");
+    reportFile.delete();
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      RepoClientMojo first = createMojo(new File("v1/"), ".properties");
+      RepoClientMojo second = createMojo(new File("v2/"), ".properties");
+      first.project.setArtifactId("first");
+      second.project.setArtifactId("second");
+      for (RepoClientMojo mojo : new RepoClientMojo[] {first, second}) {
+        mojo.serverURL = repoURL;
+        mojo.registerAtEnd = true;
+        mojo.reactorProjects = Arrays.asList(first.project, second.project);
+      }
+      second.reportFile = reportFile;
+
+      first.execute();
+      assertFalse("Expected registration to be deferred", client.subjects().iterator().hasNext());
+      second.execute();
+      // both modules' schemas went through a single session, in the order the modules contributed them
+      assertLatestSchema(client, "test_schema_1", new File(second.schemaDir, "subdir/test_schema_1.properties"));
+      assertLatestSchema(client, "test_schema_2", new File(second.schemaDir, "test_schema_2.properties"));
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+      assertTrue("Expected all schemas in the report: " + report, report.contains("\"registered\": 4"));
+      assertTrue("Expected a single subject listing: " + report, report.matches("(?s).*\"listing\": \\{\\s*\"count\": 1,.*"));
+    }
+  }
+
+  @Test
+  public void testRegisterAtEndExpectedModules() throws Exception {
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      MavenProject firstProject = new MavenProject();
+      MavenProject secondProject = new MavenProject();
+      MavenProject fetchingProject = new MavenProject();
+      firstProject.setArtifactId("first");
+      secondProject.setArtifactId("second");
+      fetchingProject.setArtifactId("fetching");
+      firstProject.getBuildPlugins().add(plugin("register-schemas"));
+      secondProject.getBuildPlugins().add(plugin("register-schemas"));
+      // declares the plugin, but only fetches schemas: not waited for
+      fetchingProject.getBuildPlugins().add(plugin("fetch-schemas"));
+      List<MavenProject> reactorProjects = Arrays.asList(firstProject, secondProject, fetchingProject);
+
+      registerAtEnd(new File("v1/"), firstProject, reactorProjects, repoURL).execute();
+      assertFalse("Expected registration to be deferred", client.subjects().iterator().hasNext());
+      RepoClientMojo second = registerAtEnd(new File("v2/"), secondProject, reactorProjects, repoURL);
+      second.execute();
+      assertLatestSchema(client, "test_schema_1", new File(second.schemaDir, "subdir/test_schema_1.properties"));
+
+      // the first module registers right away, the second one is then on its own
+      RepoClientMojo first = registerAtEnd(new File("v1/"), firstProject, reactorProjects, repoURL);
+      first.registerAtEnd = false;
+      first.execute();
+      second = registerAtEnd(new File("v2/"), secondProject, reactorProjects, repoURL);
+      second.execute();
+      assertLatestSchema(client, "test_schema_1", new File(second.schemaDir, "subdir/test_schema_1.properties"));
+
+      // the first module binds the goal, but never executes it
+      try {
+        registerAtEnd(new File("v2/"), secondProject, reactorProjects, repoURL).execute();
+        fail("Expected the last module to fail the build with schemas left unregistered");
+      } catch (MojoFailureException expected) {
+        assertTrue(expected.getLongMessage(), expected.getLongMessage().contains(firstProject.getId()));
+      }
+    }
+  }
+
+  private RepoClientMojo registerAtEnd(File schemaDir, MavenProject project, List<MavenProject> reactorProjects,
+      String repoURL) {
+    RepoClientMojo mojo = createMojo(schemaDir, ".properties");
+    project.setFile(mojo.project.getFile());
+    mojo.project = project;
+    mojo.serverURL = repoURL;
+    mojo.registerAtEnd = true;
+    mojo.reactorProjects = reactorProjects;
+    return mojo;
+  }
+
+  private static Plugin plugin(String goal) {
+    Plugin plugin = new Plugin();
+    plugin.setGroupId("org.schemarepo");
+    plugin.setArtifactId("schema-repo-maven-plugin");
+    PluginExecution execution = new PluginExecution();
+    execution.addGoal(goal);
+    plugin.addExecution(execution);
+    return plugin;
+  }
+
+  @Test
+  public void testEquivalentAvroSchemas() throws Exception {
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      RepoClientMojo mojo = createMojo(new File("avro/v1/"), null);
+      mojo.serverURL = repoURL;
+      mojo.execute();
+      String firstId = client.lookup("user").latest().getId();
+
+      // only the formatting changed, the schema is indexed under the latest version's ID
+      File idIndexDirectory = new File(System.getProperty("test.dir", "target/"), "test-registration-ids").getAbsoluteFile();
+      File idIndexFile = new File(idIndexDirectory, "META-INF/test.ids");
+      idIndexFile.delete();
+      mojo = createMojo(new File("avro/v2/"), null);
+      mojo.serverURL = repoURL;
+      mojo.idIndex = true;
+      mojo.idIndexResource = "META-INF/test.ids";
+      mojo.idIndexDirectory = idIndexDirectory;
+      mojo.execute();
+      assertEquals("Expected no new version", firstId, client.lookup("user").latest().getId());
+      String ids = new String(Files.readAllBytes(idIndexFile.toPath()), "UTF-8");
+      assertTrue("Expected the schema in the ID index: " + ids, ids.contains("user") && ids.contains(firstId));
+
+      // new field, uploaded without whitespace
+      mojo = createMojo(new File("avro/v3/"), null);
+      mojo.serverURL = repoURL;
+      mojo.minify = true;
+      mojo.execute();
+      SchemaEntry latest = client.lookup("user").latest();
+      assertNotEquals("Expected a new version", firstId, latest.getId());
+      assertTrue("Expected the new field", latest.getSchema().contains("email"));
+      assertFalse("Expected a minified schema: " + latest.getSchema(), latest.getSchema().contains("\n"));
+    }
+  }
+
+  @Test
+  public void testValidation() throws Exception {
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      // malformed schemas keep the valid one from being registered
+      List<String> errors = executeInvalid(repoURL, new File("avro/invalid/"), "none");
+      assertTrue("Expected the malformed schema to be reported: " + errors, errors.toString().contains("broken.avsc"));
+      assertTrue("Expected the duplicate field to be reported: " + errors, errors.toString().contains("duplicate.avsc"));
+      assertFalse("Expected no schemas registered", client.subjects().iterator().hasNext());
+
+      errors = executeInvalid(repoURL, new File("avro/collision/"), "none");
+      assertTrue("Expected the collision to be reported: " + errors, errors.toString().contains("both map to subject user"));
+
+      RepoClientMojo mojo = createMojo(new File("avro/v1/"), null);
+      mojo.serverURL = repoURL;
+      mojo.validate = true;
+      mojo.compatibility = "backward";
+      mojo.execute();
+      String firstId = client.lookup("user").latest().getId();
+
+      // new field without default, old data can't be read
+      errors = executeInvalid(repoURL, new File("avro/incompatible/"), "backward");
+      assertTrue("Expected the incompatibility to be reported: " + errors, errors.toString().contains("cannot read data"));
+      assertEquals("Expected no new version", firstId, client.lookup("user").latest().getId());
+    }
+  }
+
+  @Test
+  public void testBundleImport() throws Exception {
+    File bundleFile = new File(System.getProperty("test.dir", "target/"), "test-schemas.srb").getAbsoluteFile();
+    File manifestFile = new File(System.getProperty("test.dir", "target/"), "test-import.manifest");
+    File reportFile = new File(System.getProperty("test.dir", "target/"), "test-import-report.json");
+    bundleFile.delete();
+    manifestFile.delete();
+
+    BundleMojo bundle = configure(new BundleMojo(), new File("v2/"), ".properties");
+    bundle.bundleFile = bundleFile;
+    bundle.attachBundle = false;
+    bundle.execute();
+    assertTrue("Expected bundle to be written", bundleFile.isFile());
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      for (int run = 0; run < 2; run++) {
+        ImportMojo mojo = configure(new ImportMojo(), null, null);
+        mojo.compatibility = "none";
+        mojo.validate = true;
+        mojo.serverURL = repoURL;
+        mojo.bundleFile = bundleFile;
+        mojo.manifestFile = manifestFile;
+        mojo.reportFile = reportFile;
+        mojo.execute();
+      }
+      File schemaDir = new File("src/test/resources/schema/v2");
+      assertLatestSchema(client, "test_schema_1", new File(schemaDir, "subdir/test_schema_1.properties"));
+      assertLatestSchema(client, "test_schema_2", new File(schemaDir, "test_schema_2.properties"));
+      // the second import found everything in the manifest
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+      assertTrue("Expected all schemas skipped: " + report, report.contains("\"skipped\": 2"));
+    }
+  }
+
+  @Test
+  public void testBundleImportRegistrationParameters() throws Exception {
+    File bundleFile = new File(System.getProperty("test.dir", "target/"), "test-schemas-at-end.srb").getAbsoluteFile();
+    bundleFile.delete();
+
+    BundleMojo bundle = configure(new BundleMojo(), new File("v2/"), ".properties");
+    bundle.bundleFile = bundleFile;
+    bundle.attachBundle = false;
+    bundle.execute();
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start();
+        InMemorySchemaRepo mirrorServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      String mirrorURL = mirrorServer.getURL();
+      // a module registering its schema directory at end, then one importing the bundle at end, with a mirror
+      MavenProject registeringProject = new MavenProject();
+      MavenProject importingProject = new MavenProject();
+      registeringProject.setArtifactId("registering");
+      importingProject.setArtifactId("importing");
+      registeringProject.getBuildPlugins().add(plugin(RepoClientMojo.GOAL));
+      importingProject.getBuildPlugins().add(plugin(ImportMojo.GOAL));
+      List<MavenProject> reactorProjects = Arrays.asList(registeringProject, importingProject);
+
+      registerAtEnd(new File("v1/"), registeringProject, reactorProjects, repoURL).execute();
+      ImportMojo mojo = configure(new ImportMojo(), null, null);
+      importingProject.setFile(mojo.project.getFile());
+      mojo.project = importingProject;
+      mojo.compatibility = "none";
+      mojo.serverURL = repoURL;
+      mojo.bundleFile = bundleFile;
+      mojo.registerAtEnd = true;
+      mojo.reactorProjects = reactorProjects;
+      mojo.mirrorURLs = Arrays.asList(mirrorURL);
+      mojo.orderByReferences = true;
+      // ignored, the bundle was discovered and named already
+      mojo.schemaDir = new File("missing/");
+      mojo.schemaFileExt = ".avsc";
+      mojo.execute();
+
+      File schemaDir = new File("src/test/resources/schema/v2");
+      for (String url : new String[] {repoURL, mirrorURL}) {
+        RESTRepositoryClient client = new RESTRepositoryClient(url, new GsonJsonUtil(), true);
+        assertLatestSchema(client, "test_schema_1", new File(schemaDir, "subdir/test_schema_1.properties"));
+        assertLatestSchema(client, "test_schema_2", new File(schemaDir, "test_schema_2.properties"));
+      }
+    }
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    File schemaDir = Files.createTempDirectory("test-watch").toFile();
+    File schemaFile = new File(schemaDir, "subdir/test_schema_1.properties");
+
+    final WatchMojo mojo = configure(new WatchMojo(), schemaDir, ".properties");
+    mojo.watchDebounce = 50;
+    final Exception[] error = new Exception[1];
+    Thread watchThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          mojo.execute();
+        } catch (Exception e) {
+          error[0] = e;
+        }
+      }
+    };
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      mojo.serverURL = repoURL;
+      try {
+        RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+        watchThread.start();
+        Thread.sleep(500);
+        // created along with its folder
+        assertTrue(schemaFile.getParentFile().mkdir());
+        Files.copy(new File("src/test/resources/schema/v1/subdir/test_schema_1.properties").toPath(), schemaFile.toPath());
+        awaitLatestSchema(client, "test_schema_1", schemaFile);
+        Files.copy(new File("src/test/resources/schema/v2/subdir/test_schema_1.properties").toPath(), schemaFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        awaitLatestSchema(client, "test_schema_1", schemaFile);
+      } finally {
+        watchThread.interrupt();
+        watchThread.join(5000);
+      }
+    }
+    assertFalse("Expected the goal to stop when interrupted", watchThread.isAlive());
+    assertNull("Expected the goal to stop without error", error[0]);
+  }
+
+  @Test
+  public void testWatchWithIdIndex() throws Exception {
+    WatchMojo mojo = configure(new WatchMojo(), new File("v1/"), ".properties");
+    mojo.idIndex = true;
+    try {
+      mojo.execute();
+      fail("Expected the ID index to be rejected");
+    } catch (MojoExecutionException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains("<idIndex>"));
+    }
+  }
+
+  private void awaitLatestSchema(RESTRepositoryClient client, String subjectName, File schemaFile) throws Exception {
+    String expected = new String(Files.readAllBytes(schemaFile.toPath()));
+    for (int i = 0; i < 100; i++) {
+      Subject subject = client.lookup(subjectName);
+      if (subject != null && subject.latest() != null && expected.equals(subject.latest().getSchema())) {
+        return;
+      }
+      Thread.sleep(100);
+    }
+    assertLatestSchema(client, subjectName, schemaFile);
+  }
+
+  @Test
+  public void testMirrors() throws Exception {
+    File testDir = new File(System.getProperty("test.dir", "target/"));
+    File manifestFile = new File(testDir, "test-mirrors.manifest");
+    File reportFile = new File(testDir, "test-mirrors-report.json");
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start();
+        InMemorySchemaRepo mirrorServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      String mirrorURL = mirrorServer.getURL();
+      // nothing listening there
+      String downURL = InMemorySchemaRepo.unusedURL();
+      File mirrorManifestFile = RepoClientMojo.mirrorFile(manifestFile, mirrorURL);
+      File mirrorReportFile = RepoClientMojo.mirrorFile(reportFile, mirrorURL);
+      for (File file : new File[] {manifestFile, reportFile, mirrorManifestFile, mirrorReportFile}) {
+        file.delete();
+      }
+
+      RepoClientMojo mojo = createMojo(new File("v1/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.mirrorURLs = Arrays.asList(mirrorURL, downURL);
+      mojo.laggingMirrors = 1;
+      mojo.mirrorReadTimeout = 5000;
+      mojo.manifestFile = manifestFile;
+      mojo.reportFile = reportFile;
+      mojo.execute();
+      for (String url : new String[] {repoURL, mirrorURL}) {
+        RESTRepositoryClient client = new RESTRepositoryClient(url, new GsonJsonUtil(), true);
+        assertSchema(client, "test_schema_1", "1");
+        assertSchema(client, "test_schema_2", "1");
+      }
+      for (File file : new File[] {manifestFile, reportFile, mirrorManifestFile, mirrorReportFile}) {
+        assertTrue("Expected a file per schema-repo: " + file, file.isFile());
+      }
+      String mirrorReport = new String(Files.readAllBytes(mirrorReportFile.toPath()), "UTF-8");
+      assertTrue("Expected the mirror's own report: " + mirrorReport, mirrorReport.contains(mirrorURL));
+      assertTrue("Expected registrations in the report: " + mirrorReport, mirrorReport.contains("\"registered\": 2"));
+
+      // the mirror which is down is still behind, and no longer allowed to lag
+      mojo = createMojo(new File("v1/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.mirrorURLs = Arrays.asList(mirrorURL, downURL);
+      mojo.manifestFile = manifestFile;
+      try {
+        mojo.execute();
+        fail("Expected the registration to fail with a mirror down");
+      } catch (MojoFailureException expected) {
+        assertTrue(expected.getLongMessage(), expected.getLongMessage().contains(downURL));
+      }
+
+      mojo = createMojo(new File("v1/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.mirrorURLs = Arrays.asList(mirrorURL);
+      mojo.mirrorConnectTimeout = -1;
+      try {
+        mojo.execute();
+        fail("Expected a negative mirror timeout to be rejected");
+      } catch (MojoExecutionException expected) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSubjectLookups() throws Exception {
+    File reportFile = new File(System.getProperty("test.dir", "target/"), "test-subject-lookups-report.json");
+
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      // few subjects, looked up one by one
+      reportFile.delete();
+      RepoClientMojo mojo = createMojo(new File("v1/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.subjectLookupThreshold = Integer.parseInt(RepoClientMojo.DEFAULT_SUBJECT_LOOKUP_THRESHOLD);
+      mojo.reportFile = reportFile;
+      mojo.execute();
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8").replaceAll("\\s", "");
+      assertTrue("Expected subject lookups: " + report, report.contains("\"subjectLookup\":{\"count\":2,"));
+      assertTrue("Expected no subject listing: " + report, report.contains("\"listing\":{\"count\":0,"));
+
+      // more subjects than the threshold, listed once discovered, at most the first one looked up before
+      reportFile.delete();
+      mojo = createMojo(new File("v2/"), ".properties");
+      mojo.serverURL = repoURL;
+      mojo.subjectLookupThreshold = 1;
+      mojo.reportFile = reportFile;
+      mojo.execute();
+      report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8").replaceAll("\\s", "");
+      assertTrue("Expected at most one subject lookup: " + report,
+          report.matches(".*\"subjectLookup\":\\{\"count\":[01],.*"));
+      assertTrue("Expected a subject listing: " + report, report.contains("\"listing\":{\"count\":1,"));
+      assertLatestSchema(new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true), "test_schema_2",
+          new File(mojo.schemaDir, "test_schema_2.properties"));
+    }
+  }
+
+  /**
+   * Runs a validating registration expected to fail.
+   * @return errors logged
+   */
+  private List<String> executeInvalid(String repoURL, File schemaDir, String compatibility) throws Exception {
+    final List<String> errors = new ArrayList<>();
+    RepoClientMojo mojo = createMojo(schemaDir, null);
+    mojo.setLog(new SystemStreamLog() {
+      @Override
+      public void error(CharSequence content) {
+        errors.add(content.toString());
+        super.error(content);
+      }
+    });
+    mojo.serverURL = repoURL;
+    mojo.validate = true;
+    mojo.compatibility = compatibility;
+    try {
+      mojo.execute();
+      fail("Expected validation of " + schemaDir + " to fail");
+    } catch (MojoFailureException expected) {
+      // expected
+    }
+    return errors;
+  }
+
+  @Test
+  public void testOrderByReferences() throws Exception {
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      final List<String> errors = new ArrayList<>();
+      RepoClientMojo mojo = createMojo(new File("avro/cycle/"), null);
+      mojo.setLog(new SystemStreamLog() {
+        @Override
+        public void error(CharSequence content) {
+          errors.add(content.toString());
+          super.error(content);
+        }
+      });
+      mojo.serverURL = repoURL;
+      mojo.orderByReferences = true;
+      try {
+        mojo.execute();
+        fail("Expected the reference cycle to fail the registration");
+      } catch (MojoFailureException expected) {
+        // expected
+      }
+      assertTrue("Expected the cycle to be reported: " + errors, errors.toString().contains("Cycle of references"));
+      assertFalse("Expected no schemas registered", client.subjects().iterator().hasNext());
+
+      File reportFile = new File(System.getProperty("test.dir", "target/"), "test-ordered-report.json");
+      reportFile.delete();
+      mojo = createMojo(new File("avro/references/"), null);
+      mojo.serverURL = repoURL;
+      mojo.threads = 4;
+      mojo.orderByReferences = true;
+      mojo.reportFile = reportFile;
+      mojo.execute();
+      for (String subjectName : new String[] {"address", "country", "user", "order"}) {
+        assertNotNull("Expected subject to be registered: " + subjectName, client.lookup(subjectName));
+      }
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+      assertTrue("Expected the ordering to be timed: " + report,
+          report.replaceAll("\\s", "").contains("\"ordering\":{\"count\":1"));
+    }
+  }
+
+  @Test
+  public void testValidateOrderedByReferences() throws Exception {
+    try (InMemorySchemaRepo isolatedServer = InMemorySchemaRepo.start()) {
+      String repoURL = isolatedServer.getURL();
+      RESTRepositoryClient client = new RESTRepositoryClient(repoURL, new GsonJsonUtil(), true);
+      File idIndexDirectory = new File(System.getProperty("test.dir", "target/"), "test-reference-ids").getAbsoluteFile();
+      File idIndexFile = new File(idIndexDirectory, "META-INF/test.ids");
+      idIndexFile.delete();
+      // user and order reference types defined by other files, and only parse against them
+      RepoClientMojo mojo = createMojo(new File("avro/references/"), null);
+      mojo.serverURL = repoURL;
+      mojo.orderByReferences = true;
+      mojo.validate = true;
+      mojo.idIndex = true;
+      mojo.idIndexResource = "META-INF/test.ids";
+      mojo.idIndexDirectory = idIndexDirectory;
+      mojo.execute();
+      String orderId = client.lookup("order").latest().getId();
+      String ids = new String(Files.readAllBytes(idIndexFile.toPath()), "UTF-8");
+      assertTrue("Expected the referencing schemas in the ID index: " + ids, ids.contains("user") && ids.contains("order"));
+
+      File reportFile = new File(System.getProperty("test.dir", "target/"), "test-reference-report.json");
+      reportFile.delete();
+      mojo = createMojo(new File("avro/references/"), null);
+      mojo.serverURL = repoURL;
+      mojo.orderByReferences = true;
+      mojo.validate = true;
+      mojo.force = true;
+      mojo.minify = true;
+      mojo.reportFile = reportFile;
+      mojo.execute();
+      assertEquals("Expected no new version", orderId, client.lookup("order").latest().getId());
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+      assertTrue("Expected all the schemas to be equivalent: " + report,
+          report.replaceAll("\\s", "").contains("\"equivalent\":4"));
+    }
   }
 
   private void assertSchema(RESTRepositoryClient client, String subjectName, String latestVersion) throws IOException {
@@ -110,4 +700,12 @@ public class TestRepoClientMojo {
     assertEquals(latestVersion, properties.getProperty("version"));
   }
 
+  private void assertLatestSchema(RESTRepositoryClient client, String subjectName, File schemaFile) throws IOException {
+    Subject subject = client.lookup(subjectName);
+    assertNotNull("Expected subject to be registered: " + subjectName, subject);
+    SchemaEntry entry = subject.latest();
+    assertNotNull("No latest version", entry);
+    assertEquals(new String(Files.readAllBytes(schemaFile.toPath())), entry.getSchema());
+  }
+
 }
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.schemarepo.SchemaValidationException;
+
+public class TestRetryingInvoker {
+
+  @Test
+  public void testRetries() throws Exception {
+    RegistrationMetrics metrics = new RegistrationMetrics();
+    RetryingInvoker invoker = new RetryingInvoker(2, 1, 5, 0, 1, metrics);
+    final AtomicInteger calls = new AtomicInteger();
+    String result = invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, new Callable<String>() {
+      @Override
+      public String call() {
+        if (calls.incrementAndGet() < 3) {
+          throw new IllegalStateException("transient failure");
+        }
+        return "ok";
+      }
+    });
+    assertEquals("ok", result);
+    assertEquals(3, calls.get());
+    assertEquals(2, metrics.retries.get());
+
+    calls.set(0);
+    try {
+      invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, new Callable<String>() {
+        @Override
+        public String call() {
+          calls.incrementAndGet();
+          throw new IllegalStateException("permanent failure");
+        }
+      });
+      fail("Expected the last failure to be rethrown");
+    } catch (IllegalStateException expected) {
+      assertEquals(3, calls.get());
+    }
+  }
+
+  @Test
+  public void testValidationFailuresAreNotRetried() throws Exception {
+    RetryingInvoker invoker = new RetryingInvoker(2, 1, 5, 0, 1, new RegistrationMetrics());
+    final AtomicInteger calls = new AtomicInteger();
+    try {
+      invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          calls.incrementAndGet();
+          throw new SchemaValidationException("incompatible");
+        }
+      });
+      fail("Expected validation failure");
+    } catch (SchemaValidationException expected) {
+      assertEquals(1, calls.get());
+    }
+  }
+
+  @Test
+  public void testHedging() throws Exception {
+    RegistrationMetrics metrics = new RegistrationMetrics();
+    RetryingInvoker invoker = new RetryingInvoker(0, 0, 0, 90, 1, metrics);
+    try {
+      Callable<String> fast = new Callable<String>() {
+        @Override
+        public String call() {
+          return "fast";
+        }
+      };
+      for (int i = 0; i < RetryingInvoker.HEDGE_MIN_SAMPLES; i++) {
+        invoker.invoke(RegistrationMetrics.Phase.LATEST_LOOKUP, fast);
+        invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, fast);
+      }
+      assertEquals(0, metrics.hedges.get());
+
+      // registrations are never hedged, however slow
+      final AtomicInteger registrations = new AtomicInteger();
+      String registered = invoker.invoke(RegistrationMetrics.Phase.REGISTRATION, new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          registrations.incrementAndGet();
+          Thread.sleep(200);
+          return "registered";
+        }
+      });
+      assertEquals("registered", registered);
+      assertEquals(1, registrations.get());
+      assertEquals(0, metrics.hedges.get());
+
+      // first attempt stalls, the hedge returns right away
+      final AtomicInteger calls = new AtomicInteger();
+      String result = invoker.invoke(RegistrationMetrics.Phase.LATEST_LOOKUP, new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          if (calls.incrementAndGet() == 1) {
+            Thread.sleep(5000);
+            return "slow";
+          }
+          return "hedged";
+        }
+      });
+      assertEquals("hedged", result);
+      assertEquals(1, metrics.hedges.get());
+      assertEquals(1, metrics.hedgeWins.get());
+    } finally {
+      invoker.close();
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestSchemaBundle {
+
+  private static File write(String name) throws IOException {
+    File file = new File(System.getProperty("test.dir", "target/"), name).getAbsoluteFile();
+    try (SchemaBundle.Writer writer = new SchemaBundle.Writer(file)) {
+      writer.add(new SchemaFile(Paths.get("a.avsc"), "a.avsc", "a", "{\"type\":\"string\"}", "hash-a"));
+      writer.add(new SchemaFile(Paths.get("b.avsc"), "b.avsc", "b", "{\"type\":\"int\"}", "hash-b"));
+    }
+    return file;
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    SchemaBundle bundle = SchemaBundle.open(write("test-bundle.srb"));
+    assertEquals(2, bundle.getEntries().size());
+    SchemaBundle.Entry entry = bundle.getEntries().get(1);
+    assertEquals("b", entry.getSubjectName());
+    assertEquals("{\"type\":\"int\"}", bundle.read(entry).getSchema());
+  }
+
+  @Test
+  public void testCorrupted() throws Exception {
+    File file = write("test-bundle-corrupted.srb");
+    byte[] content = Files.readAllBytes(file.toPath());
+
+    // index cut short
+    Files.write(file.toPath(), Arrays.copyOf(content, content.length - 10));
+    assertRejected(file);
+
+    // index offset past the end
+    byte[] corrupted = content.clone();
+    ByteBuffer.wrap(corrupted).putLong(8, content.length + 1);
+    Files.write(file.toPath(), corrupted);
+    assertRejected(file);
+
+    // more entries than the index can hold
+    corrupted = content.clone();
+    ByteBuffer.wrap(corrupted).putInt(4, Integer.MAX_VALUE);
+    Files.write(file.toPath(), corrupted);
+    assertRejected(file);
+  }
+
+  private static void assertRejected(File file) {
+    try {
+      SchemaBundle.open(file);
+      fail("Expected " + file + " to be rejected");
+    } catch (IOException e) {
+      assertTrue("Expected the bundle file to be named: " + e.getMessage(), e.getMessage().contains(file.toString()));
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Test;
+
+public class TestSchemaFilter {
+
+  private static SchemaFilter filter(Path root, List<String> includes, List<String> excludes) {
+    return new SchemaFilter(root.getFileSystem(), ".avsc", includes, excludes);
+  }
+
+  @Test
+  public void testSchemaFiles() {
+    Path root = new File("schemas").getAbsoluteFile().toPath();
+    SchemaFilter filter = filter(root, Arrays.asList("com/acme/**"), Arrays.asList("**/*-test.avsc"));
+    assertTrue(filter.isSchemaFile(root, root.resolve("com/acme/user.avsc")));
+    assertTrue(filter.isSchemaFile(root, root.resolve("com/acme/model/order.avsc")));
+    assertFalse("Expected the extension to be required", filter.isSchemaFile(root, root.resolve("com/acme/user.json")));
+    assertFalse("Expected includes to apply", filter.isSchemaFile(root, root.resolve("org/other.avsc")));
+    assertFalse("Expected excludes to apply", filter.isSchemaFile(root, root.resolve("com/acme/user-test.avsc")));
+    assertFalse("Expected hidden files to be left out", filter.isSchemaFile(root, root.resolve("com/acme/.user.avsc")));
+
+    filter = filter(root, null, Arrays.asList("**/*-test.avsc"));
+    assertTrue("Expected all files to be included", filter.isSchemaFile(root, root.resolve("org/other.avsc")));
+    assertFalse("Expected **/ to match at the top", filter.isSchemaFile(root, root.resolve("user-test.avsc")));
+  }
+
+  @Test
+  public void testPruning() {
+    Path root = new File("schemas").getAbsoluteFile().toPath();
+    SchemaFilter filter = filter(root, null, Arrays.asList("**/target", "legacy/**"));
+    assertFalse("Expected the root never to be pruned", filter.isPruned(root, root));
+    assertTrue(filter.isPruned(root, root.resolve("target")));
+    assertTrue(filter.isPruned(root, root.resolve("module/target")));
+    assertTrue("Expected /** to prune the directory itself", filter.isPruned(root, root.resolve("legacy")));
+    assertTrue("Expected hidden directories to be pruned", filter.isPruned(root, root.resolve("module/.git")));
+    assertFalse(filter.isPruned(root, root.resolve("module")));
+    assertFalse(filter.isPruned(root, root.resolve("module/legacy")));
+  }
+
+  @Test
+  public void testWalk() throws Exception {
+    Path root = new File(System.getProperty("test.dir", "target/"), "test-schema-filter").getAbsoluteFile().toPath();
+    delete(root);
+    Set<String> expected = new TreeSet<>();
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        expected.add(create(root, "module" + i + "/sub" + j + "/schema" + i + j + ".avsc"));
+      }
+      create(root, "module" + i + "/target/classes/schema" + i + ".avsc");
+      create(root, "module" + i + "/.git/schema" + i + ".avsc");
+    }
+    expected.add(create(root, "top.avsc"));
+    create(root, "legacy/old.avsc");
+    SchemaFilter filter = filter(root, Collections.<String>emptyList(), Arrays.asList("**/target", "legacy/**"));
+
+    for (int parallelism : new int[] {1, 4}) {
+      LinkedBlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+      SchemaWalker walker = new SchemaWalker(root, filter, parallelism, queue);
+      walker.run();
+      assertEquals(null, walker.getError());
+      Set<String> found = new TreeSet<>();
+      Path path;
+      while ((path = queue.take()) != SchemaWalker.END) {
+        found.add(root.relativize(path).toString().replace(File.separatorChar, '/'));
+      }
+      assertEquals("Schema files found with parallelism " + parallelism, expected, found);
+      assertEquals(expected.size(), walker.getSchemaCnt());
+    }
+  }
+
+  @Test
+  public void testParallelWalkFailure() throws Exception {
+    Path root = new File(System.getProperty("test.dir", "target/"), "test-schema-filter-failure").getAbsoluteFile()
+        .toPath();
+    delete(root);
+    create(root, "module/sub/schema.avsc");
+    SchemaFilter filter = new SchemaFilter(root.getFileSystem(), ".avsc", null, null) {
+      @Override
+      boolean isSchemaFile(Path root, Path path) {
+        throw new IllegalArgumentException("Unexpected " + path);
+      }
+    };
+
+    LinkedBlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+    SchemaWalker walker = new SchemaWalker(root, filter, 4, queue);
+    walker.run();
+    assertTrue("Expected the failure to be recorded", walker.getError() != null);
+    assertTrue(walker.getError().getCause() instanceof IllegalArgumentException);
+    assertTrue("Expected the end of the walk to be signalled", queue.take() == SchemaWalker.END);
+  }
+
+  @Test
+  public void testReadFailure() throws Exception {
+    Path root = new File(System.getProperty("test.dir", "target/"), "test-schema-walker-failure").getAbsoluteFile()
+        .toPath();
+    delete(root);
+    // more schema files than the discovery queue holds, so that the walk blocks once reading stops
+    for (int i = 0; i < AbstractSchemaRepoMojo.DISCOVERY_QUEUE_CAPACITY + 100; i++) {
+      create(root, "schema" + i + ".avsc");
+    }
+    SchemaSet schemaSet = new SchemaSet("test", root, filter(root, null, null), 1, new DefaultSubjectNameStrategy(),
+        StandardCharsets.UTF_8, null);
+    try {
+      SchemaWalker.read(schemaSet, null, new SchemaWalker.Consumer<RuntimeException>() {
+        @Override
+        public void accept(SchemaFile schemaFile) {
+          // e.g. parsing a deeply nested schema
+          throw new StackOverflowError();
+        }
+
+        @Override
+        public void failed(Path path, Exception e) {
+          fail("Unexpected failure to read " + path);
+        }
+      });
+      fail("Expected the consumer's failure to be thrown");
+    } catch (StackOverflowError expected) {
+      // expected
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("schema-repo-discovery")) {
+        thread.join(10000);
+        assertFalse("Expected the walk to be stopped", thread.isAlive());
+      }
+    }
+  }
+
+  private static String create(Path root, String relativePath) throws IOException {
+    Path path = root.resolve(relativePath);
+    Files.createDirectories(path.getParent());
+    Files.write(path, "{\"type\":\"string\"}".getBytes("UTF-8"));
+    return relativePath;
+  }
+
+  private static void delete(Path root) throws IOException {
+    if (!Files.exists(root)) {
+      return;
+    }
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestSchemaGraph {
+
+  private static SchemaFile schema(String key, String schema) {
+    return new SchemaFile(Paths.get(key), key, key, schema, key);
+  }
+
+  private static List<List<String>> keys(SchemaGraph graph) {
+    List<List<String>> levels = new ArrayList<>();
+    for (List<SchemaFile> level : graph.getLevels()) {
+      List<String> keys = new ArrayList<>();
+      for (SchemaFile schemaFile : level) {
+        keys.add(schemaFile.getKey());
+      }
+      levels.add(keys);
+    }
+    return levels;
+  }
+
+  @Test
+  public void testLevels() {
+    SchemaGraph graph = new SchemaGraph(Arrays.asList(
+        schema("order.avsc", "{\"type\":\"record\",\"name\":\"Order\",\"namespace\":\"a.b\",\"fields\":["
+            + "{\"name\":\"user\",\"type\":\"a.User\"},{\"name\":\"self\",\"type\":[\"null\",\"Order\"]}]}"),
+        schema("user.avsc", "{\"type\":\"record\",\"name\":\"User\",\"namespace\":\"a\",\"fields\":["
+            + "{\"name\":\"kind\",\"type\":\"Kind\"},{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"Tag\"}}]}"),
+        schema("kind.avsc", "{\"type\":\"enum\",\"name\":\"a.Kind\",\"symbols\":[\"X\"]}"),
+        // unqualified names fall back to the null namespace
+        schema("tag.avsc", "{\"type\":\"fixed\",\"name\":\"Tag\",\"size\":4}"),
+        schema("notes.txt", "Order")));
+    assertEquals(new ArrayList<String>(), graph.getProblems());
+    assertEquals(Arrays.asList(
+        Arrays.asList("kind.avsc", "tag.avsc", "notes.txt"),
+        Arrays.asList("user.avsc"),
+        Arrays.asList("order.avsc")), keys(graph));
+  }
+
+  @Test
+  public void testProblems() {
+    SchemaGraph graph = new SchemaGraph(Arrays.asList(
+        schema("a.avsc", "{\"type\":\"record\",\"name\":\"A\",\"fields\":[{\"name\":\"b\",\"type\":\"B\"}]}"),
+        schema("b.avsc", "{\"type\":\"record\",\"name\":\"B\",\"fields\":[{\"name\":\"c\",\"type\":\"C\"}]}"),
+        schema("c.avsc", "{\"type\":\"record\",\"name\":\"C\",\"fields\":[{\"name\":\"a\",\"type\":\"A\"}]}"),
+        schema("d.avsc", "{\"type\":\"record\",\"name\":\"D\",\"fields\":[{\"name\":\"a\",\"type\":\"A\"}]}"),
+        schema("e.avsc", "{\"type\":\"record\",\"name\":\"E\",\"fields\":[{\"name\":\"x\",\"type\":\"x.Missing\"}]}"),
+        schema("e2.avsc", "{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"X\"]}"),
+        schema("f.avsc", "{\"type\":\"record\",\"name\":\"F\",\"fields\":[{\"name\":\"e\",\"type\":\"E\"}]}"),
+        schema("broken.avsc", "{\"type\":")));
+    List<String> problems = graph.getProblems();
+    assertEquals(problems.toString(), 4, problems.size());
+    assertTrue(problems.toString(), problems.get(0).startsWith("broken.avsc is not valid JSON"));
+    assertTrue(problems.toString(), problems.get(1).contains("e.avsc references type x.Missing"));
+    assertEquals("f.avsc references type E, which e.avsc and e2.avsc define differently", problems.get(2));
+    assertEquals("Cycle of references between schemas: a.avsc -> b.avsc -> c.avsc -> a.avsc", problems.get(3));
+    assertTrue(graph.getLevels().isEmpty());
+  }
+
+  @Test
+  public void testSameDefinitions() {
+    String line = "{\"type\":\"record\",\"name\":\"Line\",\"fields\":[{\"name\":\"sku\",\"type\":\"string\"}]}";
+    SchemaGraph graph = new SchemaGraph(Arrays.asList(
+        schema("invoice.avsc", "{\"type\":\"record\",\"name\":\"Invoice\",\"fields\":["
+            + "{\"name\":\"lines\",\"type\":{\"type\":\"array\",\"items\":" + line + "}}]}"),
+        schema("order.avsc", "{\"type\":\"record\",\"name\":\"Order\",\"fields\":["
+            + "{\"name\":\"line\",\"type\":" + line + "}]}"),
+        schema("refund.avsc", "{\"type\":\"record\",\"name\":\"Refund\",\"fields\":[{\"name\":\"line\",\"type\":\"Line\"}]}")));
+    // both define Line the same way, the first one found is referenced
+    assertEquals(new ArrayList<String>(), graph.getProblems());
+    assertEquals(Arrays.asList(
+        Arrays.asList("invoice.avsc", "order.avsc"),
+        Arrays.asList("refund.avsc")), keys(graph));
+  }
+
+}
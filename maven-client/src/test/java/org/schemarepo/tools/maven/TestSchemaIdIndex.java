@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+public class TestSchemaIdIndex {
+
+  private static final int SIZE = 1000;
+
+  @Test
+  public void testGeneratedLoader() throws Exception {
+    File dir = new File(System.getProperty("test.dir", "target/"), "test-id-index").getAbsoluteFile();
+    SchemaIdIndex index = new SchemaIdIndex();
+    for (int i = 0; i < SIZE; i++) {
+      // a few subjects with many versions each, fingerprints close to each other
+      index.add("subject_" + i % 10, i, "id_" + i);
+    }
+    index.add("subject_0", 0, "replaced");
+    assertEquals(SIZE, index.size());
+    index.write(new File(dir, "META-INF/test.ids"));
+    File source = SchemaIdIndex.writeLoader(dir, "org.example.SchemaIds", "META-INF/test.ids");
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertEquals("Expected the loader to compile", 0, compiler.run(null, null, null, source.getPath()));
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {dir.toURI().toURL()}, null)) {
+      Class<?> loader = classLoader.loadClass("org.example.SchemaIds");
+      Method id = loader.getMethod("id", String.class, long.class);
+      Method fingerprint = loader.getMethod("fingerprint", String.class, String.class, long.class);
+      assertEquals(SIZE, loader.getMethod("size").invoke(null));
+      assertEquals("replaced", id.invoke(null, "subject_0", 0L));
+      for (int i = 1; i < SIZE; i++) {
+        assertEquals("id_" + i, id.invoke(null, "subject_" + i % 10, (long) i));
+        assertEquals((long) i, fingerprint.invoke(null, "subject_" + i % 10, "id_" + i, -1L));
+      }
+      assertNull(id.invoke(null, "subject_1", 2L));
+      assertNull(id.invoke(null, "unknown", 1L));
+      assertEquals(-1L, fingerprint.invoke(null, "subject_2", "id_1", -1L));
+    }
+  }
+
+}
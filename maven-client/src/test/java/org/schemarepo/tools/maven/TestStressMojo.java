@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.schemarepo.tools.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+import org.schemarepo.Repository;
+import org.schemarepo.client.RESTRepositoryClient;
+import org.schemarepo.json.GsonJsonUtil;
+
+public class TestStressMojo {
+
+  public StressMojo createMojo(String repoURL, File reportFile, String mix) {
+    StressMojo mojo = TestRepoClientMojo.configure(new StressMojo(), new File("v1/"), ".properties");
+    mojo.serverURL = repoURL;
+    mojo.threads = 4;
+    mojo.stressDuration = 1;
+    mojo.stressMix = mix;
+    mojo.stressMultiplier = 3;
+    mojo.stressSubjectPrefix = "stress.";
+    mojo.stressReportFile = reportFile;
+    return mojo;
+  }
+
+  @Test
+  public void testStress() throws Exception {
+    File reportFile = new File(System.getProperty("test.dir", "target/"), "stress-report.json").getAbsoluteFile();
+    reportFile.delete();
+    try (InMemorySchemaRepo server = InMemorySchemaRepo.start()) {
+      StressMojo mojo = createMojo(server.getURL(), reportFile, "create=1,register=5,lookup=4");
+      mojo.execute();
+
+      String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+      for (String key : new String[] {"\"create\"", "\"register\"", "\"lookup\"", "\"throughput\"", "\"p99\""}) {
+        assertTrue("Expected " + key + " in " + report, report.contains(key));
+      }
+      Repository client = new RESTRepositoryClient(server.getURL(), new GsonJsonUtil(), true);
+      for (int i = 0; i < mojo.stressMultiplier; i++) {
+        assertNotNull("Expected synthetic subject " + i + " to be created",
+            client.lookup("stress.test_schema_1." + i));
+      }
+      assertEquals(null, client.lookup("test_schema_1"));
+    }
+  }
+
+  @Test
+  public void testMix() {
+    Map<StressStats.Operation, Integer> weights = new EnumMap<>(StressStats.Operation.class);
+    weights.put(StressStats.Operation.CREATE, 1);
+    weights.put(StressStats.Operation.REGISTER, 0);
+    weights.put(StressStats.Operation.LOOKUP, Integer.MAX_VALUE - 1);
+    StressMojo.OperationMix mix = new StressMojo.OperationMix(weights);
+    StressStats.Operation[] expected = {StressStats.Operation.CREATE, StressStats.Operation.LOOKUP,
+        StressStats.Operation.LOOKUP};
+    final int[] points = {0, 1, Integer.MAX_VALUE - 1};
+    Random random = new Random() {
+      private int i;
+
+      @Override
+      public int nextInt(int bound) {
+        assertEquals(Integer.MAX_VALUE, bound);
+        return points[i++];
+      }
+    };
+    for (StressStats.Operation operation : expected) {
+      assertEquals(operation, mix.pick(random));
+    }
+  }
+
+  @Test
+  public void testInvalidMix() throws Exception {
+    for (String mix : new String[] {"create=1,delete=1", "lookup", "create=0,lookup=0", "register=-1",
+        "create=5,create=3", "create=2147483647,lookup=1"}) {
+      try {
+        createMojo(InMemorySchemaRepo.unusedURL(), null, mix).execute();
+        fail("Expected mix " + mix + " to be rejected");
+      } catch (MojoExecutionException expected) {
+        // expected
+      }
+    }
+  }
+
+}